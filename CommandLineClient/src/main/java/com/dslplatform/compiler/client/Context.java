@@ -8,12 +8,15 @@ import org.fusesource.jansi.Ansi.Color;
 import org.fusesource.jansi.AnsiConsole;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class Context implements Closeable {
-	private final Map<String, String> parameters = new HashMap<String, String>();
-	private final Map<String, Object> cache = new HashMap<String, Object>();
+	private final Map<String, String> parameters;
+	private final Map<String, Object> cache;
 
 	private PrintStream console;
 
@@ -27,6 +30,18 @@ public class Context implements Closeable {
 
 	protected Context(PrintStream console) {
 		this.console = console;
+		this.parameters = Collections.synchronizedMap(new HashMap<String, String>());
+		this.cache = Collections.synchronizedMap(new HashMap<String, Object>());
+	}
+
+	//shares parameters and cache with the parent, but never interacts with the user
+	protected Context(final Context parent) {
+		this.console = parent.console;
+		this.parameters = parent.parameters;
+		this.cache = parent.cache;
+		this.withLog = parent.withLog;
+		this.noPrompt = true;
+		this.withColor = parent.withColor;
 	}
 
 	public void put(final CompileParameter parameter, final String value) {
@@ -172,7 +187,11 @@ public class Context implements Closeable {
 
 	@Override
 	public void close() {
-		for (Object it : cache.values()) {
+		final List<Object> values;
+		synchronized (cache) {
+			values = new ArrayList<Object>(cache.values());
+		}
+		for (Object it : values) {
 			if (it instanceof Closeable) {
 				try {
 					((Closeable) it).close();
@@ -0,0 +1,207 @@
+package com.dslplatform.compiler.client;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.*;
+import java.util.ArrayList;
+import java.util.List;
+
+public abstract class FileIO {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int MAP_THRESHOLD = 1024 * 1024;
+	private static final int MIN_BUFFER = 64 * 1024;
+	private static final int MAX_POOLED_BUFFER = 4 * 1024 * 1024;
+
+	private static final class Encoding {
+		final CharsetEncoder encoder = UTF_8.newEncoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		ByteBuffer buffer = ByteBuffer.allocate(MIN_BUFFER);
+	}
+
+	private static final ThreadLocal<Encoding> encoding = new ThreadLocal<Encoding>() {
+		@Override
+		protected Encoding initialValue() {
+			return new Encoding();
+		}
+	};
+
+	public static byte[] readBytes(final File file) throws IOException {
+		final FileInputStream fis = new FileInputStream(file);
+		try {
+			return readBytes(fis, fis.getChannel().size());
+		} finally {
+			fis.close();
+		}
+	}
+
+	private static byte[] readBytes(final InputStream stream, final long size) throws IOException {
+		if (size > Integer.MAX_VALUE) {
+			throw new IOException("File too large: " + size);
+		}
+		final byte[] result = new byte[(int) size];
+		int offset = 0;
+		int read;
+		while (offset < result.length && (read = stream.read(result, offset, result.length - offset)) != -1) {
+			offset += read;
+		}
+		if (offset < result.length) {
+			final byte[] shorter = new byte[offset];
+			System.arraycopy(result, 0, shorter, 0, offset);
+			return shorter;
+		}
+		int next = stream.read();
+		if (next == -1) {
+			return result;
+		}
+		//file was appended to while reading
+		final ByteArrayOutputStream rest = new ByteArrayOutputStream(Math.max(8192, result.length / 4));
+		rest.write(result, 0, result.length);
+		final byte[] buffer = new byte[8192];
+		rest.write(next);
+		while ((next = stream.read(buffer)) != -1) {
+			rest.write(buffer, 0, next);
+		}
+		return rest.toByteArray();
+	}
+
+	public static String readText(final File file) throws IOException {
+		final FileInputStream fis = new FileInputStream(file);
+		try {
+			final FileChannel channel = fis.getChannel();
+			final long size = channel.size();
+			//on Windows mapped file can't be changed or deleted until the buffer is collected
+			if (size >= MAP_THRESHOLD && !Utils.isWindows()) {
+				final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+				return UTF_8.newDecoder()
+						.onMalformedInput(CodingErrorAction.REPLACE)
+						.onUnmappableCharacter(CodingErrorAction.REPLACE)
+						.decode(mapped)
+						.toString();
+			}
+			return new String(readBytes(fis, size), UTF_8);
+		} finally {
+			fis.close();
+		}
+	}
+
+	public static String read(final InputStream stream) throws IOException {
+		final ByteArrayOutputStream baos = new ByteArrayOutputStream(Math.max(8192, stream.available()));
+		final byte[] buffer = new byte[8192];
+		int len;
+		while ((len = stream.read(buffer)) != -1) {
+			baos.write(buffer, 0, len);
+		}
+		return new String(baos.toByteArray(), UTF_8);
+	}
+
+	public static Either<String> readFile(final File file) {
+		try {
+			return Either.success(readText(file));
+		} catch (IOException ex) {
+			return Either.fail(ex);
+		}
+	}
+
+	public static void writeBytes(final File file, final byte[] content) throws IOException {
+		final FileOutputStream fos = new FileOutputStream(file);
+		try {
+			fos.write(content);
+		} finally {
+			fos.close();
+		}
+	}
+
+	public static void writeText(final File file, final String content) throws IOException {
+		final Encoding state = encoding.get();
+		final ByteBuffer encoded = encode(state, content);
+		try {
+			final FileOutputStream fos = new FileOutputStream(file);
+			try {
+				final FileChannel channel = fos.getChannel();
+				while (encoded.hasRemaining()) {
+					channel.write(encoded);
+				}
+			} finally {
+				fos.close();
+			}
+		} finally {
+			if (encoded.capacity() > MAX_POOLED_BUFFER) {
+				state.buffer = ByteBuffer.allocate(MIN_BUFFER);
+			}
+		}
+	}
+
+	public static byte[] encode(final String content) {
+		final ByteBuffer encoded = encode(encoding.get(), content);
+		final byte[] result = new byte[encoded.remaining()];
+		encoded.get(result);
+		return result;
+	}
+
+	private static ByteBuffer encode(final Encoding state, final String content) {
+		final CharsetEncoder encoder = state.encoder;
+		final CharBuffer input = CharBuffer.wrap(content);
+		ByteBuffer buffer = state.buffer;
+		final int expected = (int) Math.min(Integer.MAX_VALUE, (long) content.length() * 3);
+		if (buffer.capacity() < expected) {
+			//UTF-8 never needs more than 3 bytes per char
+			buffer = ByteBuffer.allocate(Math.max(expected, MIN_BUFFER));
+		}
+		buffer.clear();
+		encoder.reset();
+		CoderResult cr = encoder.encode(input, buffer, true);
+		if (cr.isUnderflow()) {
+			cr = encoder.flush(buffer);
+		}
+		if (!cr.isUnderflow()) {
+			throw new IllegalStateException("Unable to encode content: " + cr);
+		}
+		state.buffer = buffer;
+		buffer.flip();
+		return buffer;
+	}
+
+	public static void saveFile(final Context context, final File file, final String content) throws IOException {
+		context.log("Saving file: " + file.getAbsolutePath());
+		writeText(file, content);
+	}
+
+	//subfolder is searched as soon as it is reached. Files are matched by suffix, such as .dsl
+	public static List<File> findFiles(final Context context, final File path, final List<String> extensions) {
+		context.log("Searching for files...");
+		for (final String ext : extensions) {
+			context.log("Matching: " + ext);
+		}
+		final List<File> foundFiles = new ArrayList<File>();
+		findFiles(context, path, foundFiles, extensions);
+		return foundFiles;
+	}
+
+	private static void findFiles(final Context context, final File path, final List<File> foundFiles, final List<String> extensions) {
+		final String[] files = path.list();
+		if (files == null) return;
+		for (final String fn : files) {
+			final File f = new File(path, fn);
+			if (f.isDirectory()) {
+				findFiles(context, f, foundFiles, extensions);
+			} else if (matches(fn, extensions)) {
+				context.log("Found: " + f.getAbsolutePath());
+				foundFiles.add(f);
+			}
+		}
+	}
+
+	private static boolean matches(final String name, final List<String> extensions) {
+		for (final String e : extensions) {
+			if (name.endsWith(e)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
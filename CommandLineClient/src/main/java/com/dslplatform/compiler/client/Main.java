@@ -63,18 +63,23 @@ public class Main {
 	}
 
 	private static CompileParameter[] DEFAULT_PARAMETERS = new CompileParameter[]{
+			BuildReport.INSTANCE,
 			DslPath.INSTANCE,
 			SqlPath.INSTANCE,
 			Download.INSTANCE,
+			ClearToolCache.INSTANCE,
 			Dependencies.INSTANCE,
 			Nuget.INSTANCE,
 			DotNet.INSTANCE,
 			Mono.INSTANCE,
 			TempPath.INSTANCE,
 			DslCompiler.INSTANCE,
+			CompilerPool.INSTANCE,
+			CompilerCache.INSTANCE,
 			Maven.INSTANCE,
 			JavaPath.INSTANCE,
 			ScalaPath.INSTANCE,
+			ScalaServer.INSTANCE,
 			Namespace.INSTANCE,
 			Version.INSTANCE,
 			Settings.INSTANCE,
@@ -84,7 +89,10 @@ public class Main {
 			Parse.INSTANCE,
 			Diff.INSTANCE,
 			Targets.INSTANCE,
+			Parallel.INSTANCE,
 			Force.INSTANCE,
+			StagedOutput.INSTANCE,
+			Reproducible.INSTANCE,
 			Migration.INSTANCE,
 			ApplyMigration.INSTANCE,
 			DisableColors.INSTANCE,
@@ -97,7 +105,14 @@ public class Main {
 		try {
 			context.notify("PROCESS", parameters);
 			for (final CompileParameter cp : parameters) {
-				if (!cp.check(context)) {
+				final long start = BuildReport.start();
+				final boolean valid;
+				try {
+					valid = cp.check(context);
+				} finally {
+					BuildReport.span(context, "check:" + cp.getAlias(), start);
+				}
+				if (!valid) {
 					if (cp.getDetailedDescription() != null) {
 						context.show();
 						context.show();
@@ -107,7 +122,12 @@ public class Main {
 				}
 			}
 			for (final CompileParameter cp : parameters) {
-				cp.run(context);
+				final long start = BuildReport.start();
+				try {
+					cp.run(context);
+				} finally {
+					BuildReport.span(context, "run:" + cp.getAlias(), start);
+				}
 			}
 			return true;
 		} catch (ExitException ex) {
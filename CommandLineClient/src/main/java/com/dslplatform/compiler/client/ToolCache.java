@@ -0,0 +1,158 @@
+package com.dslplatform.compiler.client;
+
+import java.io.*;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+public abstract class ToolCache {
+
+	private static final String FILE_NAME = "tools.cache";
+
+	private static Properties entries;
+
+	static String key(final String command, final String contains, final List<String> arguments) {
+		final StringBuilder sb = new StringBuilder(command);
+		for (final String arg : arguments) {
+			sb.append(' ').append(arg);
+		}
+		return sb.append(" => ").append(contains).toString();
+	}
+
+	//probe is repeated when the executable or a file argument changes
+	static String fingerprint(final String command, final List<String> arguments) {
+		final File executable = resolve(command);
+		if (executable == null) {
+			return null;
+		}
+		final StringBuilder sb = new StringBuilder();
+		append(sb, executable);
+		for (final String arg : arguments) {
+			final File file = new File(arg);
+			if (file.isFile()) {
+				sb.append(';');
+				append(sb, file);
+			}
+		}
+		return sb.toString();
+	}
+
+	private static void append(final StringBuilder sb, final File file) {
+		sb.append(file.getAbsolutePath()).append(':').append(file.lastModified()).append(':').append(file.length());
+	}
+
+	private static File resolve(final String command) {
+		final File file = new File(command);
+		if (file.getParent() != null || file.isAbsolute()) {
+			return file.isFile() ? file : null;
+		}
+		final String path = System.getenv("PATH");
+		if (path == null) {
+			return null;
+		}
+		final String pathExt = Utils.isWindows() && command.indexOf('.') == -1 ? System.getenv("PATHEXT") : null;
+		final String[] extensions = pathExt != null ? pathExt.split(";") : new String[]{""};
+		for (final String folder : path.split(File.pathSeparator)) {
+			if (folder.length() == 0) continue;
+			for (final String ext : extensions) {
+				final File candidate = new File(folder, command + ext);
+				if (candidate.isFile()) {
+					return candidate;
+				}
+			}
+		}
+		return null;
+	}
+
+	private static File location() {
+		final String home = System.getProperty("user.home");
+		if (home == null || home.isEmpty() || !new File(home).exists()) {
+			return null;
+		}
+		return new File(new File(home, ".DSL-Platform"), FILE_NAME);
+	}
+
+	private static Properties load(final Context context) {
+		if (entries == null) {
+			entries = new Properties();
+			final File file = location();
+			if (file != null && file.exists()) {
+				try {
+					final InputStream is = new FileInputStream(file);
+					try {
+						entries.load(is);
+					} finally {
+						is.close();
+					}
+				} catch (IOException ex) {
+					context.log("Unable to load tool cache: " + ex.getMessage());
+					entries.clear();
+				}
+			}
+		}
+		return entries;
+	}
+
+	//only successful probes are remembered. Missing tool might be installed before the next run
+	static synchronized boolean find(final Context context, final String key, final String fingerprint) {
+		final String value = load(context).getProperty(key);
+		if (value == null || !value.equals(fingerprint + "|true")) {
+			return false;
+		}
+		context.log("Using cached result for: " + key);
+		return true;
+	}
+
+	static synchronized void save(final Context context, final String key, final String fingerprint) {
+		final Properties props = load(context);
+		props.setProperty(key, fingerprint + "|true");
+		final File file = location();
+		if (file == null || !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+			return;
+		}
+		//concurrent runs must never see a partially written cache
+		final File temp = new File(file.getParentFile(), FILE_NAME + "." + System.nanoTime() + ".tmp");
+		try {
+			final OutputStream os = new FileOutputStream(temp);
+			try {
+				props.store(os, "DSL Platform tool discovery cache");
+			} finally {
+				os.close();
+			}
+			if (!temp.renameTo(file) && (!file.delete() || !temp.renameTo(file))) {
+				context.log("Unable to save tool cache: " + file.getAbsolutePath());
+			}
+		} catch (IOException ex) {
+			context.log("Unable to save tool cache: " + ex.getMessage());
+		} finally {
+			if (temp.exists()) {
+				temp.delete();
+			}
+		}
+	}
+
+	//facts about an executable, such as a missing compiler feature, are valid until the executable changes
+	public static boolean isKnown(final Context context, final File executable, final String fact) {
+		final String fingerprint = fingerprint(executable.getAbsolutePath(), Collections.<String>emptyList());
+		return fingerprint != null && find(context, key(executable.getAbsolutePath(), fact, Collections.<String>emptyList()), fingerprint);
+	}
+
+	public static void remember(final Context context, final File executable, final String fact) {
+		final String fingerprint = fingerprint(executable.getAbsolutePath(), Collections.<String>emptyList());
+		if (fingerprint != null) {
+			save(context, key(executable.getAbsolutePath(), fact, Collections.<String>emptyList()), fingerprint);
+		}
+	}
+
+	public static synchronized void clear(final Context context) {
+		entries = new Properties();
+		final File file = location();
+		if (file != null && file.exists()) {
+			if (file.delete()) {
+				context.log("Deleted tool cache: " + file.getAbsolutePath());
+			} else {
+				context.warning("Unable to delete tool cache: " + file.getAbsolutePath());
+			}
+		}
+	}
+}
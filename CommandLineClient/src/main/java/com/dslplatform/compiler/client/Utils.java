@@ -14,68 +14,19 @@ import java.util.zip.ZipInputStream;
 public abstract class Utils {
 
 	public static String read(final InputStream stream) throws IOException {
-		final ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		final byte[] buffer = new byte[8192];
-		int len;
-		while ((len = stream.read(buffer)) != -1) {
-			baos.write(buffer, 0, len);
-		}
-		return baos.toString("UTF-8");
+		return FileIO.read(stream);
 	}
 
 	public static Either<String> readFile(final File file) {
-		try {
-			final FileInputStream stream = new FileInputStream(file);
-			try {
-				final String content = read(stream);
-				return Either.success(content);
-			} finally {
-				stream.close();
-			}
-		} catch (IOException ex) {
-			return Either.fail(ex);
-		}
+		return FileIO.readFile(file);
 	}
 
 	public static void saveFile(final Context context, final File file, final String content) throws IOException {
-		context.log("Saving file: " + file.getAbsolutePath());
-		final FileOutputStream fos = new FileOutputStream(file);
-		try {
-			final Writer writer = new OutputStreamWriter(fos, "UTF-8");
-			writer.write(content);
-			writer.close();
-		} finally {
-			fos.close();
-		}
+		FileIO.saveFile(context, file, content);
 	}
 
 	public static List<File> findFiles(final Context context, final File path, final List<String> extensions) {
-		context.log("Searching for files...");
-		for (final String ext : extensions) {
-			context.log("Matching: " + ext);
-		}
-		final List<File> foundFiles = new LinkedList<File>();
-		findFiles(context, path, foundFiles, extensions);
-		return foundFiles;
-	}
-
-	private static void findFiles(final Context context, final File path, final List<File> foundFiles, final List<String> extensions) {
-		final String[] files = path.list();
-		if (files == null) return;
-		for (final String fn : files) {
-			final File f = new File(path, fn);
-			if (f.isDirectory()) {
-				findFiles(context, f, foundFiles, extensions);
-			} else {
-				for (final String e : extensions) {
-					if (f.getName().endsWith(e)) {
-						context.log("Found: " + f.getAbsolutePath());
-						foundFiles.add(f);
-						break;
-					}
-				}
-			}
-		}
+		return FileIO.findFiles(context, path, extensions);
 	}
 
 	public static long unpackZip(final Context context, final File path, final URL remoteUrl) throws IOException {
@@ -263,6 +214,19 @@ public abstract class Utils {
 	}
 
 	public static boolean testCommand(final Context context, final String command, final String contains, final List<String> arguments) {
+		final String key = ToolCache.key(command, contains, arguments);
+		final String fingerprint = ToolCache.fingerprint(command, arguments);
+		if (fingerprint != null && ToolCache.find(context, key, fingerprint)) {
+			return true;
+		}
+		final boolean result = runTestCommand(context, command, contains, arguments);
+		if (result && fingerprint != null) {
+			ToolCache.save(context, key, fingerprint);
+		}
+		return result;
+	}
+
+	private static boolean runTestCommand(final Context context, final String command, final String contains, final List<String> arguments) {
 		try {
 			final List<String> commandAndArgs = new ArrayList<String>();
 			commandAndArgs.add(command);
@@ -290,7 +254,21 @@ public abstract class Utils {
 		return runCommand(context, command, path, arguments, Charset.defaultCharset());
 	}
 
+	public interface OutputHandler {
+		void handle(InputStream stream) throws IOException;
+	}
+
 	public static Either<CommandResult> runCommand(final Context context, final String command, final File path, final List<String> arguments, final Charset charset) {
+		return runCommand(context, command, path, arguments, charset, null);
+	}
+
+	public static Either<CommandResult> runCommand(
+			final Context context,
+			final String command,
+			final File path,
+			final List<String> arguments,
+			final Charset charset,
+			final OutputHandler handler) {
 		try {
 			final List<String> commandAndArgs = new ArrayList<String>();
 			commandAndArgs.add(command);
@@ -302,8 +280,25 @@ public abstract class Utils {
 			}
 			logCommand(context, pb);
 			final Process compilation = pb.start();
-			final ConsumeStream result = ConsumeStream.start(compilation.getInputStream(), context, charset);
 			final ConsumeStream error = ConsumeStream.start(compilation.getErrorStream(), context, charset);
+			final ConsumeStream result;
+			if (handler != null) {
+				result = new ConsumeStream();
+				final InputStream output = compilation.getInputStream();
+				try {
+					handler.handle(output);
+					final byte[] buffer = new byte[8192];
+					while (output.read(buffer) != -1) {
+						//discard leftover output so process can exit
+					}
+				} catch (IOException ex) {
+					compilation.destroy();
+					error.join();
+					return Either.fail(ex);
+				}
+			} else {
+				result = ConsumeStream.start(compilation.getInputStream(), context, charset);
+			}
 			final int exitCode = compilation.waitFor();
 			result.join();
 			error.join();
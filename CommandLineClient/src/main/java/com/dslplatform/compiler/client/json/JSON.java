@@ -63,6 +63,105 @@ public abstract class JSON {
 		return deserializeList(reader);
 	}
 
+	public interface PairHandler {
+		void pair(String key, String value) throws IOException;
+	}
+
+	public static String readString(final byte[] input, final int length) throws IOException {
+		JsonReader reader = new JsonReader(input, length);
+		reader.getNextToken();
+		return reader.wasNull() ? null : reader.readString();
+	}
+
+	//decodes {"key":"value",...} or [{"Key":"key","Value":"value"},...] without intermediate collections
+	public static int readPairs(final byte[] input, final int length, final PairHandler handler) throws IOException {
+		JsonReader reader = new JsonReader(input, length);
+		final byte start = reader.getNextToken();
+		if (start == '{') {
+			return readObjectPairs(reader, handler);
+		} else if (start == '[') {
+			return readArrayPairs(reader, handler);
+		}
+		throw new IOException("Expecting '{' or '[' at position " + reader.positionInStream() + ". Found " + (char) start);
+	}
+
+	private static String readNullableString(final JsonReader reader) throws IOException {
+		return reader.wasNull() ? null : reader.readString();
+	}
+
+	private static int readObjectPairs(final JsonReader reader, final PairHandler handler) throws IOException {
+		byte nextToken = reader.getNextToken();
+		if (nextToken == '}') return 0;
+		int count = 0;
+		do {
+			if (count > 0) {
+				reader.getNextToken();
+			}
+			final String key = reader.readString();
+			nextToken = reader.getNextToken();
+			if (nextToken != ':') {
+				throw new IOException("Expecting ':' at position " + reader.positionInStream() + ". Found " + (char) nextToken);
+			}
+			reader.getNextToken();
+			final String value = readNullableString(reader);
+			handler.pair(key, value != null ? value : "");
+			count++;
+		} while ((nextToken = reader.getNextToken()) == ',');
+		if (nextToken != '}') {
+			throw new IOException("Expecting '}' at position " + reader.positionInStream() + ". Found " + (char) nextToken);
+		}
+		return count;
+	}
+
+	private static int readArrayPairs(final JsonReader reader, final PairHandler handler) throws IOException {
+		byte nextToken = reader.getNextToken();
+		if (nextToken == ']') return 0;
+		int count = 0;
+		do {
+			if (count > 0) {
+				reader.getNextToken();
+			}
+			if (reader.last() != '{') {
+				throw new IOException("Expecting '{' at position " + reader.positionInStream() + ". Found " + (char) reader.last());
+			}
+			String key = null;
+			String value = null;
+			nextToken = reader.getNextToken();
+			if (nextToken != '}') {
+				do {
+					if (nextToken == ',') {
+						reader.getNextToken();
+					}
+					final String name = reader.readString();
+					nextToken = reader.getNextToken();
+					if (nextToken != ':') {
+						throw new IOException("Expecting ':' at position " + reader.positionInStream() + ". Found " + (char) nextToken);
+					}
+					reader.getNextToken();
+					if ("Key".equals(name)) {
+						key = readNullableString(reader);
+					} else if ("Value".equals(name)) {
+						value = readNullableString(reader);
+					} else {
+						deserializeObject(reader);
+					}
+				} while ((nextToken = reader.getNextToken()) == ',');
+				if (nextToken != '}') {
+					throw new IOException("Expecting '}' at position " + reader.positionInStream() + ". Found " + (char) nextToken);
+				}
+			}
+			if (key == null) {
+				throw new IOException("Expecting Key at position " + reader.positionInStream());
+			}
+			handler.pair(key, value != null ? value : "");
+			count++;
+		} while ((nextToken = reader.getNextToken()) == ',');
+		if (nextToken != ']') {
+			throw new IOException("Expecting ']' at position " + reader.positionInStream() + ". Found " + (char) nextToken);
+		}
+		return count;
+	}
+
 	private static LinkedHashMap<String, Object> deserializeMap(final JsonReader reader) throws IOException {
 		if (reader.last() != '{') {
 			throw new IOException("Expecting '{' at position " + reader.positionInStream() + ". Found " + (char) reader.last());
@@ -97,7 +97,7 @@ public enum ApplyMigration implements CompileParameter {
 			context.show("Nothing to apply.");
 			return;
 		}
-		final Either<String> trySql = Utils.readFile(file);
+		final Either<String> trySql = FileIO.readFile(file);
 		if (!trySql.isSuccess()) {
 			context.error("Error reading SQL migration file for " + db.getDName() + ".");
 			context.error(trySql.whyNot());
@@ -0,0 +1,240 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+import java.io.*;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+public enum BuildReport implements CompileParameter, ParameterParser {
+	INSTANCE;
+
+	private static final String CACHE_NAME = "build_report";
+
+	@Override
+	public String getAlias() {
+		return "report";
+	}
+
+	@Override
+	public String getUsage() {
+		return "path";
+	}
+
+	private static final class Span {
+		final String phase;
+		final String target;
+		final String thread;
+		final long start;
+		final long duration;
+
+		Span(final String phase, final String target, final long start, final long duration) {
+			this.phase = phase;
+			this.target = target;
+			this.thread = Thread.currentThread().getName();
+			this.start = start;
+			this.duration = duration;
+		}
+	}
+
+	//spans are collected from the start of processing, but written only when report path is specified
+	private static final class Report implements Closeable {
+		final Context context;
+		final long startedOn = System.currentTimeMillis();
+		final long start = System.nanoTime();
+		final List<Span> spans = new ArrayList<Span>();
+		volatile File path;
+
+		Report(final Context context) {
+			this.context = context;
+		}
+
+		@Override
+		public void close() {
+			final File file = path;
+			if (file == null) {
+				return;
+			}
+			path = null;
+			try {
+				FileIO.saveFile(context, file, toJson());
+				context.log("Build report saved to: " + file.getAbsolutePath());
+			} catch (IOException ex) {
+				context.warning("Unable to save build report to: " + file.getAbsolutePath());
+				context.warning(ex);
+			}
+		}
+
+		private String toJson() {
+			final List<Span> copy;
+			synchronized (spans) {
+				copy = new ArrayList<Span>(spans);
+			}
+			//first span starts before the report is created
+			long base = start;
+			for (final Span s : copy) {
+				base = Math.min(base, s.start);
+			}
+			final long total = System.nanoTime() - base;
+			final Map<String, Long> phases = new TreeMap<String, Long>();
+			final Map<String, Map<String, Long>> targets = new TreeMap<String, Map<String, Long>>();
+			for (final Span s : copy) {
+				add(phases, s.phase, s.duration);
+				if (s.target != null) {
+					Map<String, Long> breakdown = targets.get(s.target);
+					if (breakdown == null) {
+						breakdown = new TreeMap<String, Long>();
+						targets.put(s.target, breakdown);
+					}
+					add(breakdown, s.phase, s.duration);
+				}
+			}
+			final SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+			final StringBuilder sb = new StringBuilder();
+			sb.append("{\n  \"started\": ");
+			string(sb, format.format(new Date(startedOn)));
+			sb.append(",\n  \"totalNanos\": ").append(total);
+			sb.append(",\n  \"phases\": ");
+			totals(sb, phases, "  ");
+			sb.append(",\n  \"targets\": {");
+			boolean first = true;
+			for (final Map.Entry<String, Map<String, Long>> kv : targets.entrySet()) {
+				sb.append(first ? "\n    " : ",\n    ");
+				first = false;
+				string(sb, kv.getKey());
+				sb.append(": ");
+				totals(sb, kv.getValue(), "    ");
+			}
+			sb.append(targets.isEmpty() ? "}" : "\n  }");
+			sb.append(",\n  \"spans\": [");
+			first = true;
+			for (final Span s : copy) {
+				sb.append(first ? "\n    " : ",\n    ");
+				first = false;
+				sb.append("{\"phase\": ");
+				string(sb, s.phase);
+				if (s.target != null) {
+					sb.append(", \"target\": ");
+					string(sb, s.target);
+				}
+				sb.append(", \"thread\": ");
+				string(sb, s.thread);
+				sb.append(", \"startNanos\": ").append(s.start - base);
+				sb.append(", \"durationNanos\": ").append(s.duration).append('}');
+			}
+			sb.append(copy.isEmpty() ? "]" : "\n  ]");
+			sb.append("\n}\n");
+			return sb.toString();
+		}
+
+		private static void add(final Map<String, Long> totals, final String name, final long duration) {
+			final Long current = totals.get(name);
+			totals.put(name, current == null ? duration : current + duration);
+		}
+
+		private static void totals(final StringBuilder sb, final Map<String, Long> totals, final String indent) {
+			sb.append('{');
+			boolean first = true;
+			for (final Map.Entry<String, Long> kv : totals.entrySet()) {
+				sb.append(first ? "\n" : ",\n").append(indent).append("  ");
+				first = false;
+				string(sb, kv.getKey());
+				sb.append(": ").append(kv.getValue());
+			}
+			sb.append(totals.isEmpty() ? "}" : "\n" + indent + "}");
+		}
+
+		private static void string(final StringBuilder sb, final String value) {
+			sb.append('"');
+			for (int i = 0; i < value.length(); i++) {
+				final char c = value.charAt(i);
+				if (c == '"' || c == '\\') {
+					sb.append('\\').append(c);
+				} else if (c < 32) {
+					sb.append(String.format("\\u%04x", (int) c));
+				} else {
+					sb.append(c);
+				}
+			}
+			sb.append('"');
+		}
+	}
+
+	private static Report report(final Context context) {
+		synchronized (INSTANCE) {
+			Report report = context.load(CACHE_NAME);
+			if (report == null) {
+				report = new Report(context);
+				context.cache(CACHE_NAME, report);
+			}
+			return report;
+		}
+	}
+
+	public static long start() {
+		return System.nanoTime();
+	}
+
+	public static void span(final Context context, final String phase, final long start) {
+		span(context, phase, null, start);
+	}
+
+	public static void span(final Context context, final String phase, final String target, final long start) {
+		span(context, phase, target, start, System.nanoTime());
+	}
+
+	public static void span(final Context context, final String phase, final String target, final long start, final long end) {
+		final Span span = new Span(phase, target, start, end - start);
+		final Report report = report(context);
+		synchronized (report.spans) {
+			report.spans.add(span);
+		}
+	}
+
+	@Override
+	public Either<Boolean> tryParse(final String name, final String value, final Context context) {
+		if ("report".equals(name)) {
+			context.put(INSTANCE, value);
+			return Either.success(true);
+		}
+		return Either.success(false);
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		if (context.contains(INSTANCE)) {
+			final String value = context.get(INSTANCE);
+			if (value == null || value.length() == 0) {
+				context.error("Build report path not specified");
+				return false;
+			}
+			final File file = new File(value).getAbsoluteFile();
+			if (file.isDirectory()) {
+				context.error("Build report path is a directory: " + file.getAbsolutePath());
+				return false;
+			}
+			report(context).path = file;
+		}
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Save timings of build phases as JSON";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "Each phase (parameter checks, DSL discovery, database introspection, compiler requests,\n" +
+				"saving files, javac/scalac/csc, packaging, downloads...) is timed.\n" +
+				"When the report is specified, timings are saved as JSON at the end of processing.\n" +
+				"Report contains total time per phase, breakdown per target and a list of all spans in nanoseconds.\n" +
+				"\n" +
+				"Example:\n" +
+				"\treport=build/dsl-report.json\n";
+	}
+}
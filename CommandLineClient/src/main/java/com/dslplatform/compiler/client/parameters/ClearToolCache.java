@@ -0,0 +1,43 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.CompileParameter;
+import com.dslplatform.compiler.client.Context;
+import com.dslplatform.compiler.client.ToolCache;
+
+public enum ClearToolCache implements CompileParameter {
+	INSTANCE;
+
+	@Override
+	public String getAlias() {
+		return "clear-tool-cache";
+	}
+
+	@Override
+	public String getUsage() {
+		return null;
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		if (context.contains(INSTANCE)) {
+			ToolCache.clear(context);
+		}
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Detect Mono, .NET, Java and DSL compiler again instead of using remembered results";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "Results of tool detection are remembered in the .DSL-Platform folder inside user home.\n" +
+				"Remembered result is used only while the tool is found at the same location with the same modification time and size.\n" +
+				"This option removes all remembered results before tools are detected again.";
+	}
+}
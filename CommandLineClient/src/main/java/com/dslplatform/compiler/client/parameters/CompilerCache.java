@@ -0,0 +1,363 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+public enum CompilerCache implements CompileParameter, ParameterParser {
+	INSTANCE;
+
+	@Override
+	public String getAlias() {
+		return "cache";
+	}
+
+	@Override
+	public String getUsage() {
+		return "size in MB";
+	}
+
+	private static final String CACHE_NAME = "compiler_output_cache";
+	private static final int DEFAULT_SIZE_MB = 256;
+	private static final String EXTENSION = ".cache";
+	private static final String UNAVAILABLE = "compiler_output_cache_unavailable";
+
+	public static class Stats {
+		public final int hits;
+		public final int misses;
+
+		Stats(final int hits, final int misses) {
+			this.hits = hits;
+			this.misses = misses;
+		}
+	}
+
+	public static Stats getStats(final Context context) {
+		final Store store = context.load(CACHE_NAME);
+		return store == null ? new Stats(0, 0) : new Stats(store.hits.get(), store.misses.get());
+	}
+
+	static String key(
+			final Context context,
+			final List<String> arguments,
+			final List<File> dsls,
+			final DatabaseInfo dbInfo) throws ExitException {
+		if (!context.contains(INSTANCE)) {
+			return null;
+		}
+		final String compilerPath = context.get(DslCompiler.INSTANCE);
+		final File compiler = compilerPath != null ? new File(compilerPath) : null;
+		if (compiler == null || !compiler.isFile()) {
+			warnUnavailable(context, compilerPath);
+			return null;
+		}
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			context.warning(ex);
+			return null;
+		}
+		update(digest, compiler.getAbsolutePath());
+		update(digest, Long.toString(compiler.lastModified()));
+		update(digest, Long.toString(compiler.length()));
+		update(digest, System.getProperty("user.dir"));
+		for (final String arg : arguments) {
+			if (!arg.startsWith("dsl=") && !arg.startsWith("previous-dsl=")) {
+				update(digest, arg);
+			}
+		}
+		if (dsls.equals(DslPath.getDslPaths(context))) {
+			for (final Map.Entry<String, String> kv : DslPath.getCurrentDsl(context).entrySet()) {
+				update(digest, kv.getKey());
+				update(digest, kv.getValue());
+			}
+		} else {
+			for (final File f : dsls) {
+				final Either<String> content = FileIO.readFile(f);
+				if (!content.isSuccess()) {
+					return null;
+				}
+				update(digest, f.getAbsolutePath());
+				update(digest, content.get());
+			}
+		}
+		if (dbInfo != null && dbInfo.dsl != null) {
+			update(digest, "previous-dsl");
+			for (final String v : dbInfo.dsl.values()) {
+				update(digest, v);
+			}
+			update(digest, dbInfo.compilerVersion != null ? dbInfo.compilerVersion : "");
+		}
+		final StringBuilder sb = new StringBuilder(40);
+		for (final byte b : digest.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	//compiler on a port can't be identified, so its output can't be reused
+	private static void warnUnavailable(final Context context, final String compilerPath) {
+		synchronized (CompilerCache.class) {
+			if (context.load(UNAVAILABLE) != null) {
+				return;
+			}
+			context.cache(UNAVAILABLE, Boolean.TRUE);
+		}
+		context.warning("Compiler cache is not used since compiler is not a local file: " + compilerPath);
+	}
+
+	private static void update(final MessageDigest digest, final String value) {
+		try {
+			digest.update(value.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException ignore) {
+		}
+		digest.update((byte) 0);
+	}
+
+	static int replay(final Context context, final String key, final DslCompiler.SourceSink sink) throws ExitException {
+		final Store store = getStore(context);
+		final File file = new File(store.folder, key + EXTENSION);
+		if (!file.isFile()) {
+			store.misses.incrementAndGet();
+			return -1;
+		}
+		int count = 0;
+		try {
+			final DataInputStream dis = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+			try {
+				while (dis.readBoolean()) {
+					final String name = readString(dis);
+					final String content = readString(dis);
+					sink.add(name, content);
+					count++;
+				}
+			} finally {
+				dis.close();
+			}
+		} catch (IOException ex) {
+			context.warning("Unable to read cached compiler output: " + file.getAbsolutePath());
+			context.warning(ex);
+			if (!file.delete()) {
+				context.warning("Unable to delete invalid cache entry: " + file.getAbsolutePath());
+			}
+			store.misses.incrementAndGet();
+			return -1;
+		}
+		if (!file.setLastModified(new Date().getTime())) {
+			context.log("Unable to update access time of: " + file.getAbsolutePath());
+		}
+		store.hits.incrementAndGet();
+		return count;
+	}
+
+	static Recorder record(final Context context, final String key, final DslCompiler.SourceSink sink) throws ExitException {
+		final Store store = getStore(context);
+		final File temp = new File(store.folder, key + "-" + UUID.randomUUID() + ".tmp");
+		try {
+			return new Recorder(store, key, temp, sink);
+		} catch (IOException ex) {
+			context.warning("Unable to create cache entry: " + temp.getAbsolutePath());
+			context.warning(ex);
+			return null;
+		}
+	}
+
+	static class Recorder implements DslCompiler.SourceSink {
+		private final Store store;
+		private final String key;
+		private final File temp;
+		private final DslCompiler.SourceSink sink;
+		private final DataOutputStream dos;
+		private boolean valid = true;
+
+		private Recorder(final Store store, final String key, final File temp, final DslCompiler.SourceSink sink) throws IOException {
+			this.store = store;
+			this.key = key;
+			this.temp = temp;
+			this.sink = sink;
+			this.dos = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))));
+		}
+
+		@Override
+		public void add(final String name, final String content) throws IOException {
+			sink.add(name, content);
+			if (valid) {
+				try {
+					dos.writeBoolean(true);
+					writeString(dos, name);
+					writeString(dos, content);
+				} catch (IOException ex) {
+					valid = false;
+					store.context.warning("Unable to write cache entry: " + ex.getMessage());
+				}
+			}
+		}
+
+		void commit() {
+			try {
+				dos.writeBoolean(false);
+				dos.close();
+			} catch (IOException ex) {
+				valid = false;
+			}
+			if (!valid) {
+				abort();
+				return;
+			}
+			final File file = new File(store.folder, key + EXTENSION);
+			if (file.exists() && !file.delete() || !temp.renameTo(file)) {
+				store.context.warning("Unable to save cache entry: " + file.getAbsolutePath());
+				abort();
+				return;
+			}
+			store.evict();
+		}
+
+		void abort() {
+			try {
+				dos.close();
+			} catch (IOException ignore) {
+			}
+			if (temp.exists() && !temp.delete()) {
+				store.context.warning("Unable to delete temporary cache entry: " + temp.getAbsolutePath());
+			}
+		}
+	}
+
+	private static String readString(final DataInputStream dis) throws IOException {
+		final int length = dis.readInt();
+		final byte[] bytes = new byte[length];
+		dis.readFully(bytes);
+		return new String(bytes, "UTF-8");
+	}
+
+	private static void writeString(final DataOutputStream dos, final String value) throws IOException {
+		final byte[] bytes = value.getBytes("UTF-8");
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+
+	private static synchronized Store getStore(final Context context) throws ExitException {
+		Store store = context.load(CACHE_NAME);
+		if (store == null) {
+			final File folder = new File(TempPath.getTempRootPath(context), "compiler-cache");
+			if (!folder.exists() && !folder.mkdirs()) {
+				context.error("Unable to create compiler cache folder: " + folder.getAbsolutePath());
+				throw new ExitException();
+			}
+			final String value = context.get(INSTANCE);
+			final long sizeMB = value == null || value.length() == 0 ? DEFAULT_SIZE_MB : Long.parseLong(value);
+			store = new Store(context, folder, sizeMB * 1024 * 1024);
+			context.cache(CACHE_NAME, store);
+		}
+		return store;
+	}
+
+	private static class Store implements Closeable {
+		private final Context context;
+		private final File folder;
+		private final long maxSize;
+		private final AtomicInteger hits = new AtomicInteger();
+		private final AtomicInteger misses = new AtomicInteger();
+
+		Store(final Context context, final File folder, final long maxSize) {
+			this.context = context;
+			this.folder = folder;
+			this.maxSize = maxSize;
+		}
+
+		synchronized void evict() {
+			final File[] entries = folder.listFiles(new FilenameFilter() {
+				@Override
+				public boolean accept(final File dir, final String name) {
+					return name.endsWith(EXTENSION);
+				}
+			});
+			if (entries == null) return;
+			long total = 0;
+			for (final File f : entries) {
+				total += f.length();
+			}
+			if (total <= maxSize) return;
+			//least recently used entries are the ones with oldest modification time
+			Arrays.sort(entries, new Comparator<File>() {
+				@Override
+				public int compare(final File a, final File b) {
+					final long diff = a.lastModified() - b.lastModified();
+					return diff < 0 ? -1 : diff > 0 ? 1 : 0;
+				}
+			});
+			for (int i = 0; i < entries.length && total > maxSize; i++) {
+				final long length = entries[i].length();
+				if (entries[i].delete()) {
+					context.log("Evicted cached compiler output: " + entries[i].getName());
+					total -= length;
+				}
+			}
+		}
+
+		@Override
+		public void close() {
+			context.log("Compiler cache hits: " + hits.get() + ", misses: " + misses.get());
+		}
+	}
+
+	@Override
+	public Either<Boolean> tryParse(final String name, final String value, final Context context) {
+		if ("cache".equals(name)) {
+			context.put(INSTANCE, value);
+			return Either.success(true);
+		}
+		return Either.success(false);
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		if (context.contains(INSTANCE)) {
+			final String value = context.get(INSTANCE);
+			if (value != null && value.length() > 0) {
+				try {
+					if (Long.parseLong(value) < 1) {
+						context.error("Compiler cache size must be a positive number. Found: " + value);
+						return false;
+					}
+				} catch (NumberFormatException ignore) {
+					context.error("Invalid compiler cache size: " + value);
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Reuse compiler output when DSL, settings and compiler did not change";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "Generated sources can be stored in the temporary folder and reused on the next run.\n" +
+				"Cache key includes DSL, target, settings, namespace, version, library, compiler and previous DSL.\n" +
+				"When nothing changed, DSL compiler will not be invoked.\n" +
+				"Cache is not used when compiler is specified as a port.\n" +
+				"Least recently used entries are removed when cache grows over the specified size.\n" +
+				"Default cache size is " + DEFAULT_SIZE_MB + " MB.\n" +
+				"\n" +
+				"Example:\n" +
+				"\tcache\n" +
+				"\tcache=1024\n";
+	}
+}
@@ -0,0 +1,168 @@
+package com.dslplatform.compiler.client.parameters;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Timer;
+import java.util.TimerTask;
+
+abstract class CompilerChannel {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static final int MIN_BUFFER = 64 * 1024;
+	//IDE plugins keep the pool for their whole lifetime, so only a few MB are retained
+	private static final int MAX_POOLED_BYTES = 4 * 1024 * 1024;
+	private static final List<ByteBuffer> FREE = new ArrayList<ByteBuffer>();
+	private static int pooledBytes;
+
+	static final long RESPONSE_TIMEOUT = 30000;
+	private static final Timer WATCHDOG = new Timer("dsl-compiler-timeout", true);
+
+	//blocking channel ignores SO_TIMEOUT, so it's closed when the response doesn't arrive in time
+	private static final class Deadline extends TimerTask {
+		private final SocketChannel channel;
+		volatile boolean expired;
+
+		Deadline(final SocketChannel channel) {
+			this.channel = channel;
+		}
+
+		@Override
+		public void run() {
+			expired = true;
+			try {
+				channel.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	static SocketChannel connect(final int port) throws IOException {
+		SocketChannel channel;
+		try {
+			channel = SocketChannel.open(new InetSocketAddress("::1", port));
+		} catch (IOException ex6) {
+			channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+		}
+		channel.socket().setKeepAlive(true);
+		channel.socket().setTcpNoDelay(true);
+		return channel;
+	}
+
+	static final class Response {
+		final boolean success;
+		//heap buffer from the pool. Body is in array() from 0 to limit()
+		final ByteBuffer body;
+
+		private Response(final boolean success, final ByteBuffer body) {
+			this.success = success;
+			this.body = body;
+		}
+
+		String text() {
+			return new String(body.array(), 0, body.limit(), UTF_8);
+		}
+
+		byte[] copy() {
+			final byte[] result = new byte[body.limit()];
+			System.arraycopy(body.array(), 0, result, 0, result.length);
+			return result;
+		}
+
+		void release() {
+			CompilerChannel.release(body);
+		}
+	}
+
+	static void write(final SocketChannel channel, final String command, final byte[] payload) throws IOException {
+		final ByteBuffer[] buffers = payload == null
+				? new ByteBuffer[]{ByteBuffer.wrap(command.getBytes(UTF_8))}
+				: new ByteBuffer[]{ByteBuffer.wrap(command.getBytes(UTF_8)), ByteBuffer.wrap(payload)};
+		final ByteBuffer last = buffers[buffers.length - 1];
+		while (last.hasRemaining()) {
+			channel.write(buffers);
+		}
+	}
+
+	//4 byte status, 4 byte length and the body, which is read into a buffer of the exact size
+	static Response read(final SocketChannel channel, final ByteBuffer header, final long timeout) throws IOException {
+		final Deadline deadline = new Deadline(channel);
+		WATCHDOG.schedule(deadline, timeout);
+		try {
+			return read(channel, header);
+		} catch (IOException ex) {
+			if (deadline.expired) {
+				throw new SocketTimeoutException("DSL compiler did not respond in " + timeout + " ms");
+			}
+			throw ex;
+		} finally {
+			deadline.cancel();
+		}
+	}
+
+	private static Response read(final SocketChannel channel, final ByteBuffer header) throws IOException {
+		header.clear();
+		header.limit(8);
+		readFully(channel, header);
+		final boolean success = header.get(0) == 'O';
+		final int length = header.getInt(4);
+		if (length < 0) {
+			throw new IOException("Invalid response from server. Negative length: " + length);
+		}
+		final ByteBuffer body = acquire(length);
+		try {
+			readFully(channel, body);
+		} catch (IOException ex) {
+			release(body);
+			throw ex;
+		}
+		body.flip();
+		return new Response(success, body);
+	}
+
+	private static void readFully(final SocketChannel channel, final ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer) == -1) {
+				throw new EOFException("Invalid response from server. Connection closed.");
+			}
+		}
+	}
+
+	static ByteBuffer acquire(final int size) {
+		synchronized (FREE) {
+			int best = -1;
+			for (int i = 0; i < FREE.size(); i++) {
+				final int capacity = FREE.get(i).capacity();
+				if (capacity >= size && (best == -1 || capacity < FREE.get(best).capacity())) {
+					best = i;
+				}
+			}
+			if (best != -1) {
+				final ByteBuffer buffer = FREE.remove(best);
+				pooledBytes -= buffer.capacity();
+				buffer.clear();
+				buffer.limit(size);
+				return buffer;
+			}
+		}
+		final ByteBuffer buffer = ByteBuffer.allocate(Math.max(size, MIN_BUFFER));
+		buffer.limit(size);
+		return buffer;
+	}
+
+	static void release(final ByteBuffer buffer) {
+		synchronized (FREE) {
+			if (pooledBytes + buffer.capacity() <= MAX_POOLED_BYTES) {
+				FREE.add(buffer);
+				pooledBytes += buffer.capacity();
+			}
+		}
+	}
+}
@@ -0,0 +1,359 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.Context;
+import com.dslplatform.compiler.client.Either;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.FileLock;
+import java.nio.channels.SocketChannel;
+import java.util.*;
+
+//compiler shared by all tools on the machine. Owner stops it after it was idle without leases
+public final class CompilerDaemon {
+
+	private static final String FOLDER_NAME = "daemon";
+	static final String DISCOVERY_FILE = "compiler.properties";
+	private static final String LOCK_FILE = "compiler.lock";
+	private static final long HEARTBEAT = 10000;
+	static final long LEASE_TIMEOUT = 3 * HEARTBEAT;
+	private static final long IDLE_TIMEOUT = 5 * 60 * 1000;
+	private static final int CONNECT_ATTEMPTS = 300;
+
+	private static final List<Lease> leases = new ArrayList<Lease>();
+	static final Map<Integer, Owned> owned = new HashMap<Integer, Owned>();
+	private static Thread heartbeat;
+
+	static final class Owned {
+		final Context context;
+		final File folder;
+		final Process process;
+		long idleSince;
+
+		Owned(final Context context, final File folder, final Process process) {
+			this.context = context;
+			this.folder = folder;
+			this.process = process;
+		}
+	}
+
+	public static final class Lease implements Closeable {
+		public final int port;
+		private final File file;
+		private final Process process;
+		private volatile boolean closed;
+
+		Lease(final int port, final File file, final Process process) {
+			this.port = port;
+			this.file = file;
+			this.process = process;
+		}
+
+		//owner knows when the process stopped. Others find out when the connection fails
+		public boolean isAlive() {
+			if (closed) return false;
+			if (process == null) return true;
+			try {
+				process.exitValue();
+				return false;
+			} catch (IllegalThreadStateException ignore) {
+				return true;
+			}
+		}
+
+		public void close() {
+			if (closed) return;
+			closed = true;
+			synchronized (CompilerDaemon.class) {
+				leases.remove(this);
+			}
+			if (!file.delete()) {
+				file.deleteOnExit();
+			}
+		}
+
+		//compiler is not responding. Stop it when owned so the next lease starts a new one
+		public void invalidate() {
+			close();
+			if (process != null) {
+				synchronized (CompilerDaemon.class) {
+					owned.remove(port);
+				}
+				process.destroy();
+			}
+		}
+	}
+
+	private static File folder() {
+		final String home = System.getProperty("user.home");
+		if (home == null || home.isEmpty() || !new File(home).exists()) {
+			return null;
+		}
+		final File folder = new File(new File(home, ".DSL-Platform"), FOLDER_NAME);
+		return folder.exists() || folder.mkdirs() ? folder : null;
+	}
+
+	private static String version(final File compiler) {
+		return compiler.lastModified() + ":" + compiler.length();
+	}
+
+	private static String processId() {
+		try {
+			return ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+		} catch (Exception ignore) {
+			return "";
+		}
+	}
+
+	private static boolean canConnect(final int port) {
+		try {
+			final SocketChannel channel = CompilerChannel.connect(port);
+			channel.close();
+			return true;
+		} catch (IOException ignore) {
+			return false;
+		}
+	}
+
+	public static Either<Lease> acquire(final Context context, final File compiler) {
+		final File folder = folder();
+		if (folder == null) {
+			return Either.fail("Unable to find .DSL-Platform folder in user home");
+		}
+		synchronized (CompilerDaemon.class) {
+			try {
+				final RandomAccessFile lockFile = new RandomAccessFile(new File(folder, LOCK_FILE), "rw");
+				try {
+					final FileLock lock = lockFile.getChannel().lock();
+					try {
+						return acquireLocked(context, folder, compiler);
+					} finally {
+						lock.release();
+					}
+				} finally {
+					lockFile.close();
+				}
+			} catch (IOException ex) {
+				return Either.fail(ex);
+			}
+		}
+	}
+
+	//damaged discovery file is treated as if no server was registered
+	static int parsePort(final String value) {
+		if (value == null) {
+			return -1;
+		}
+		try {
+			final int port = Integer.parseInt(value.trim());
+			return port > 0 && port < 65536 ? port : -1;
+		} catch (NumberFormatException ignore) {
+			return -1;
+		}
+	}
+
+	private static Either<Lease> acquireLocked(final Context context, final File folder, final File compiler) throws IOException {
+		final File discovery = new File(folder, DISCOVERY_FILE);
+		final Properties info = new Properties();
+		if (discovery.exists()) {
+			final InputStream is = new FileInputStream(discovery);
+			try {
+				info.load(is);
+			} finally {
+				is.close();
+			}
+		}
+		final String version = version(compiler);
+		final String path = compiler.getAbsolutePath();
+		final int registered = parsePort(info.getProperty("port"));
+		if (registered > 0
+				&& path.equals(info.getProperty("compiler"))
+				&& version.equals(info.getProperty("version"))) {
+			final int port = registered;
+			final Owned own = owned.get(port);
+			if (own != null ? isRunning(own.process) : canConnect(port)) {
+				context.show("Using shared DSL Platform compiler at port: " + port);
+				return Either.success(lease(folder, port, own != null ? own.process : null));
+			}
+		}
+		final int port = new Random().nextInt(40000) + 20000;
+		final Either<Process> tryProcess = DslCompiler.startServerProcess(context, compiler, port);
+		if (!tryProcess.isSuccess()) {
+			return Either.fail(tryProcess.whyNot());
+		}
+		final Process process = tryProcess.get();
+		consumeOutput(context, process);
+		//others should not start another compiler while this one is still initializing
+		for (int i = 0; i < CONNECT_ATTEMPTS && isRunning(process) && !canConnect(port); i++) {
+			try {
+				Thread.sleep(100);
+			} catch (InterruptedException ex) {
+				process.destroy();
+				return Either.fail(ex);
+			}
+		}
+		if (!isRunning(process)) {
+			return Either.fail("DSL Platform compiler stopped during startup");
+		}
+		final Properties newInfo = new Properties();
+		newInfo.setProperty("port", Integer.toString(port));
+		newInfo.setProperty("pid", processId());
+		newInfo.setProperty("compiler", path);
+		newInfo.setProperty("version", version);
+		final OutputStream os = new FileOutputStream(discovery);
+		try {
+			newInfo.store(os, "Shared DSL Platform compiler");
+		} finally {
+			os.close();
+		}
+		owned.put(port, new Owned(context, folder, process));
+		context.show("Started shared DSL Platform compiler at port: " + port);
+		return Either.success(lease(folder, port, process));
+	}
+
+	private static boolean isRunning(final Process process) {
+		try {
+			process.exitValue();
+			return false;
+		} catch (IllegalThreadStateException ignore) {
+			return true;
+		}
+	}
+
+	private static Lease lease(final File folder, final int port, final Process process) throws IOException {
+		final File file = new File(folder, port + "-" + UUID.randomUUID() + ".lease");
+		if (!file.createNewFile()) {
+			throw new IOException("Unable to create lease file: " + file.getAbsolutePath());
+		}
+		final Lease lease = new Lease(port, file, process);
+		leases.add(lease);
+		if (heartbeat == null) {
+			heartbeat = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					while (true) {
+						try {
+							Thread.sleep(HEARTBEAT);
+						} catch (InterruptedException ex) {
+							return;
+						}
+						beat();
+					}
+				}
+			}, "dsl-compiler-lease");
+			heartbeat.setDaemon(true);
+			heartbeat.start();
+		}
+		return lease;
+	}
+
+	private static void beat() {
+		final long now = new Date().getTime();
+		final List<Owned> idle = new ArrayList<Owned>();
+		synchronized (CompilerDaemon.class) {
+			for (final Lease l : leases) {
+				if (!l.file.setLastModified(now)) {
+					l.file.getParentFile().mkdirs();
+					try {
+						l.file.createNewFile();
+					} catch (IOException ignore) {
+					}
+				}
+			}
+			for (final Map.Entry<Integer, Owned> kv : owned.entrySet()) {
+				final Owned own = kv.getValue();
+				if (activeLeases(own.folder, kv.getKey(), now) > 0) {
+					own.idleSince = 0;
+				} else if (own.idleSince == 0) {
+					own.idleSince = now;
+				} else if (now - own.idleSince > IDLE_TIMEOUT) {
+					idle.add(own);
+				}
+			}
+		}
+		for (final Owned own : idle) {
+			stopIdle(own);
+		}
+	}
+
+	//leases which were not touched are left over from processes which did not release them
+	static int activeLeases(final File folder, final int port, final long now) {
+		final File[] files = folder.listFiles();
+		if (files == null) return 0;
+		int count = 0;
+		final String prefix = port + "-";
+		for (final File f : files) {
+			if (!f.getName().startsWith(prefix) || !f.getName().endsWith(".lease")) continue;
+			if (now - f.lastModified() > LEASE_TIMEOUT) {
+				f.delete();
+			} else {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	static void stopIdle(final Owned own) {
+		synchronized (CompilerDaemon.class) {
+			try {
+				final RandomAccessFile lockFile = new RandomAccessFile(new File(own.folder, LOCK_FILE), "rw");
+				try {
+					final FileLock lock = lockFile.getChannel().lock();
+					try {
+						Integer port = null;
+						for (final Map.Entry<Integer, Owned> kv : owned.entrySet()) {
+							if (kv.getValue() == own) port = kv.getKey();
+						}
+						//lease could have been acquired while waiting for the lock
+						if (port == null || activeLeases(own.folder, port, new Date().getTime()) > 0) {
+							own.idleSince = 0;
+							return;
+						}
+						owned.remove(port);
+						final File discovery = new File(own.folder, DISCOVERY_FILE);
+						final Properties info = new Properties();
+						if (discovery.exists()) {
+							final InputStream is = new FileInputStream(discovery);
+							try {
+								info.load(is);
+							} finally {
+								is.close();
+							}
+							if (port.toString().equals(info.getProperty("port"))) {
+								discovery.delete();
+							}
+						}
+						own.context.show("Stopping idle shared DSL Platform compiler at port: " + port);
+						own.process.destroy();
+					} finally {
+						lock.release();
+					}
+				} finally {
+					lockFile.close();
+				}
+			} catch (IOException ex) {
+				own.context.log("Unable to stop idle DSL Platform compiler: " + ex.getMessage());
+			}
+		}
+	}
+
+	private static void consumeOutput(final Context context, final Process process) {
+		final Thread consume = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+				final char[] buffer = new char[8192];
+				int len;
+				try {
+					while ((len = reader.read(buffer)) != -1) {
+						context.log(buffer, len);
+					}
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+		});
+		consume.setDaemon(true);
+		consume.start();
+	}
+}
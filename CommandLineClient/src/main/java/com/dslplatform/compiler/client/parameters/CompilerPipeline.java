@@ -0,0 +1,190 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.Context;
+import com.dslplatform.compiler.client.Either;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+//requests are written back to back on a keep-alive connection and responses are matched in the order they arrive
+final class CompilerPipeline implements Closeable {
+
+	private static final String CACHE_NAME = "dsl-compiler-pipeline";
+
+	private final Context context;
+	final SocketChannel channel;
+	private final Object writeLock = new Object();
+	private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<Pending>();
+	private final Object queueLock = new Object();
+	private final ByteBuffer header = ByteBuffer.allocateDirect(8);
+	private final long timeout;
+	private final Thread reader;
+	private volatile IOException broken;
+
+	CompilerPipeline(final Context context, final SocketChannel channel) {
+		this(context, channel, CompilerChannel.RESPONSE_TIMEOUT);
+	}
+
+	CompilerPipeline(final Context context, final SocketChannel channel, final long timeout) {
+		this.context = context;
+		this.channel = channel;
+		this.timeout = timeout;
+		this.reader = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				readResponses();
+			}
+		}, "dsl-compiler-pipeline");
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+
+	static final class Pending implements Future<Either<byte[]>> {
+		private final DslCompiler.SourceSink sink;
+		private final CountDownLatch latch = new CountDownLatch(1);
+		private Either<byte[]> result;
+		//when the response arrived, regardless of when it was collected
+		long completedOn;
+
+		Pending(final DslCompiler.SourceSink sink) {
+			this.sink = sink;
+		}
+
+		private void complete(final Either<byte[]> value) {
+			completedOn = System.nanoTime();
+			result = value;
+			latch.countDown();
+		}
+
+		//request is already on the wire, so it can't be cancelled
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isDone() {
+			return latch.getCount() == 0;
+		}
+
+		@Override
+		public Either<byte[]> get() throws InterruptedException {
+			latch.await();
+			return result;
+		}
+
+		@Override
+		public Either<byte[]> get(final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException {
+			if (!latch.await(timeout, unit)) {
+				throw new TimeoutException();
+			}
+			return result;
+		}
+	}
+
+	static CompilerPipeline get(final Context context, final SocketChannel channel) {
+		synchronized (CompilerPipeline.class) {
+			CompilerPipeline pipeline = context.load(CACHE_NAME);
+			if (pipeline == null || pipeline.channel != channel || pipeline.broken != null) {
+				if (pipeline != null) {
+					pipeline.close();
+				}
+				pipeline = new CompilerPipeline(context, channel);
+				context.cache(CACHE_NAME, pipeline);
+			}
+			return pipeline;
+		}
+	}
+
+	Pending submit(final String command, final byte[] payload, final DslCompiler.SourceSink sink) {
+		final Pending pending = new Pending(sink);
+		synchronized (writeLock) {
+			//queue before writing, so reader always finds the request for the response
+			synchronized (queueLock) {
+				final IOException error = broken;
+				if (error != null) {
+					pending.complete(Either.<byte[]>fail(error));
+					return pending;
+				}
+				queue.add(pending);
+			}
+			try {
+				CompilerChannel.write(channel, command, payload);
+			} catch (IOException ex) {
+				fail(ex);
+			}
+		}
+		return pending;
+	}
+
+	private void readResponses() {
+		Pending pending = null;
+		try {
+			while (true) {
+				pending = queue.take();
+				//timeout counts from the moment the request is next in line, so queued requests don't expire
+				final CompilerChannel.Response response = CompilerChannel.read(channel, header, timeout);
+				context.log("Response size from DSL compiler: " + response.body.limit());
+				Either<byte[]> result;
+				try {
+					if (!response.success) {
+						result = Either.fail(response.text());
+					} else if (pending.sink != null) {
+						DslCompiler.readSources(response.body.array(), response.body.limit(), pending.sink);
+						result = Either.success(null);
+					} else {
+						result = Either.success(response.copy());
+					}
+				} catch (IOException ex) {
+					result = Either.fail(ex);
+				} finally {
+					response.release();
+				}
+				pending.complete(result);
+				pending = null;
+			}
+		} catch (InterruptedException ignore) {
+			fail(pending, new IOException("DSL compiler pipeline closed"));
+		} catch (IOException ex) {
+			fail(pending, ex);
+		} catch (Throwable ex) {
+			//reader is gone, so nobody would ever complete waiting requests
+			fail(pending, new IOException("DSL compiler response could not be processed", ex));
+		}
+	}
+
+	private void fail(final IOException error) {
+		fail(null, error);
+	}
+
+	private void fail(final Pending current, final IOException error) {
+		final List<Pending> remaining = new ArrayList<Pending>();
+		if (current != null) {
+			remaining.add(current);
+		}
+		synchronized (queueLock) {
+			if (broken == null) {
+				broken = error;
+				context.log("DSL compiler connection failed: " + error.getMessage());
+			}
+			queue.drainTo(remaining);
+		}
+		for (final Pending p : remaining) {
+			p.complete(Either.<byte[]>fail(error));
+		}
+	}
+
+	@Override
+	public void close() {
+		reader.interrupt();
+	}
+}
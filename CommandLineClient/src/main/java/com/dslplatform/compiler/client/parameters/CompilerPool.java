@@ -0,0 +1,82 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+public enum CompilerPool implements CompileParameter, ParameterParser {
+	INSTANCE;
+
+	@Override
+	public String getAlias() {
+		return "pool";
+	}
+
+	@Override
+	public String getUsage() {
+		return "size";
+	}
+
+	private static final int DEFAULT_SIZE = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+	//pool can be warmed up before parameters are checked, so size is validated on every access
+	public static Either<Integer> getSize(final Context context) {
+		final String value = context.get(INSTANCE);
+		if (value == null || value.length() == 0) {
+			return Either.success(DEFAULT_SIZE);
+		}
+		final int size;
+		try {
+			size = Integer.parseInt(value);
+		} catch (NumberFormatException ignore) {
+			return Either.fail("Invalid compiler pool size: " + value);
+		}
+		if (size < 1) {
+			return Either.fail("Compiler pool size must be a positive number. Found: " + value);
+		}
+		return Either.success(size);
+	}
+
+	@Override
+	public Either<Boolean> tryParse(final String name, final String value, final Context context) {
+		if ("pool".equals(name)) {
+			context.put(INSTANCE, value);
+			return Either.success(true);
+		}
+		return Either.success(false);
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		if (context.contains(INSTANCE)) {
+			final Either<Integer> size = getSize(context);
+			if (!size.isSuccess()) {
+				context.error(size.explainError());
+				return false;
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Run requests through a pool of warm DSL Platform compilers";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "DSL Platform compiler can be started in server mode and reused across requests.\n" +
+				"When pool is enabled, several compilers will be started on random local ports\n" +
+				"and compile, migration and parse requests will be distributed across them.\n" +
+				"Broken or stopped compilers will be restarted on next use.\n" +
+				"Pool is ignored when compiler is specified as a port.\n" +
+				"\n" +
+				"Default pool size is the number of processors (up to 4).\n" +
+				"\n" +
+				"Example:\n" +
+				"\tpool\n" +
+				"\tpool=3\n";
+	}
+}
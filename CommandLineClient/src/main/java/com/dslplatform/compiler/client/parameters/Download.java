@@ -51,7 +51,12 @@ public enum Download implements CompileParameter {
 		final URL server = new URL(Download.remoteUrl(context) + file + ".zip");
 		final String websiteName = websiteName(context);
 		context.show("Downloading " + file + ".zip from " + websiteName + "...");
-		return Utils.unpackZip(context, path, server);
+		final long start = BuildReport.start();
+		try {
+			return Utils.unpackZip(context, path, server);
+		} finally {
+			BuildReport.span(context, "download", file, start);
+		}
 	}
 
 	public static Either<Long> lastModified(final Context context, final String file, final String name, final long current) {
@@ -2,13 +2,16 @@ package com.dslplatform.compiler.client.parameters;
 
 import com.dslplatform.compiler.client.*;
 import com.dslplatform.compiler.client.json.JSON;
-import org.w3c.dom.*;
 
 import java.io.*;
 import java.lang.management.ManagementFactory;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
 import java.nio.charset.Charset;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Pattern;
 
 public enum DslCompiler implements CompileParameter, ParameterParser {
 	INSTANCE;
@@ -26,6 +29,14 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 	private final static Charset UTF_8 = Charset.forName("UTF-8");
 
 	private static final String DSL_COMPILER_SOCKET = "dsl-compiler-socket";
+	private static final String DSL_COMPILER_VALIDATION = "dsl-compiler-validation";
+	private static final String DSL_COMPILER_JSON = "dsl-compiler-json";
+	private static final String DSL_COMPILER_NO_JSON = "dsl-compiler-no-json";
+	private static final String DSL_COMPILER_NO_MULTI = "dsl-compiler-no-multi";
+
+	public interface SourceSink {
+		void add(String name, String content) throws IOException;
+	}
 
 	public static Map<String, String> compile(
 			final Context context,
@@ -38,6 +49,177 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			final String library,
 			final String configuration) throws ExitException {
 		final Map<String, String> files = new HashMap<String, String>();
+		compile(context, target, settings, namespace, version, dbInfo, dsls, library, configuration, new SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+				files.put(name, content);
+			}
+		});
+		context.notify("SOURCES", files);
+		return files;
+	}
+
+	public static int compile(
+			final Context context,
+			final String target,
+			final List<String> settings,
+			final String namespace,
+			final String version,
+			final DatabaseInfo dbInfo,
+			final List<File> dsls,
+			final String library,
+			final String configuration,
+			final SourceSink sink) throws ExitException {
+		final List<String> arguments = compileArguments(context, target, settings, namespace, version, dbInfo, dsls, library, configuration);
+		final Either<Integer> result = compile(context, target, arguments, dsls, dbInfo, null, sink);
+		if (!result.isSuccess()) {
+			context.error(result.whyNot());
+			throw new ExitException();
+		}
+		return result.get();
+	}
+
+	//single invocation for several targets, so DSL is analyzed only once instead of once per target.
+	//files are expected to be prefixed with the target name.
+	//when compiler doesn't support it, null is returned and targets should be compiled one by one
+	public static Map<String, Map<String, String>> compile(
+			final Context context,
+			final List<String> targets,
+			final List<String> settings,
+			final String namespace,
+			final String version,
+			final DatabaseInfo dbInfo,
+			final List<File> dsls) throws ExitException {
+		if (isKnown(context, DSL_COMPILER_NO_MULTI)) {
+			return null;
+		}
+		final Map<String, Map<String, String>> result = new LinkedHashMap<String, Map<String, String>>();
+		final StringBuilder target = new StringBuilder();
+		for (final String t : targets) {
+			if (target.length() > 0) {
+				target.append(',');
+			}
+			target.append(t);
+			result.put(t, new HashMap<String, String>());
+		}
+		final boolean[] unknown = new boolean[1];
+		final List<String> arguments = compileArguments(context, target.toString(), settings, namespace, version, dbInfo, dsls, null, null);
+		final Either<Integer> response = compile(context, target.toString(), arguments, dsls, dbInfo, unknown, new SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+				final int index = name.indexOf('/');
+				final Map<String, String> files = index > 0 ? result.get(name.substring(0, index)) : null;
+				if (files != null) {
+					files.put(name.substring(index + 1), content);
+				} else {
+					unknown[0] = true;
+				}
+			}
+		});
+		if (!response.isSuccess() && !isMultiTargetUnsupported(response.explainError())) {
+			context.error(response.whyNot());
+			throw new ExitException();
+		}
+		if (!response.isSuccess() || unknown[0]) {
+			context.log("Unable to compile multiple targets in a single request. Targets will be compiled one by one");
+			if (!response.isSuccess()) {
+				context.log(response.explainError());
+			}
+			remember(context, DSL_COMPILER_NO_MULTI);
+			return null;
+		}
+		for (final Map<String, String> files : result.values()) {
+			context.notify("SOURCES", files);
+		}
+		return result;
+	}
+
+	//when sink sets rejected flag, response is not usable and it's not stored in the cache
+	private static Either<Integer> compile(
+			final Context context,
+			final String target,
+			final List<String> arguments,
+			final List<File> dsls,
+			final DatabaseInfo dbInfo,
+			final boolean[] rejected,
+			final SourceSink sink) throws ExitException {
+		final String cacheKey = CompilerCache.key(context, arguments, dsls, dbInfo);
+		if (cacheKey != null) {
+			final int cached = CompilerCache.replay(context, cacheKey, sink);
+			if (cached >= 0) {
+				context.log("Reusing " + cached + " cached file(s) for " + target);
+				return Either.success(cached);
+			}
+		}
+		context.log("Compiling DSL to " + target + "...");
+		final long start = BuildReport.start();
+		final int[] count = new int[1];
+		final CompilerCache.Recorder recorder = cacheKey != null ? CompilerCache.record(context, cacheKey, sink) : null;
+		final SourceSink output = recorder != null ? recorder : sink;
+		boolean success = false;
+		try {
+			final Either<byte[]> response = runCompilerJson(context, arguments, new boolean[1], new SourceSink() {
+				@Override
+				public void add(final String name, final String content) throws IOException {
+					output.add(name, content);
+					count[0]++;
+				}
+			});
+			if (!response.isSuccess()) {
+				return Either.fail(response.whyNot());
+			}
+			success = true;
+		} finally {
+			if (recorder != null) {
+				if (success && (rejected == null || !rejected[0])) recorder.commit();
+				else recorder.abort();
+			}
+		}
+		BuildReport.span(context, "compiler request", target, start);
+		context.show("Creating the source took " + (System.nanoTime() - start) / 1000000000 + " second(s)");
+		context.log("Received " + count[0] + " file(s) from DSL compiler");
+		return Either.success(count[0]);
+	}
+
+	//compiler capabilities are remembered per compiler executable, so the next run doesn't have to discover them again
+	private static boolean isKnown(final Context context, final String fact) {
+		if (context.load(fact) != null) {
+			return true;
+		}
+		final File compiler = compilerExecutable(context);
+		if (compiler != null && ToolCache.isKnown(context, compiler, fact)) {
+			context.cache(fact, Boolean.TRUE);
+			return true;
+		}
+		return false;
+	}
+
+	private static void remember(final Context context, final String fact) {
+		context.cache(fact, Boolean.TRUE);
+		final File compiler = compilerExecutable(context);
+		if (compiler != null) {
+			ToolCache.remember(context, compiler, fact);
+		}
+	}
+
+	private static File compilerExecutable(final Context context) {
+		if (context.load(DSL_COMPILER_SOCKET) != null || !context.contains(INSTANCE)) {
+			return null;
+		}
+		final File compiler = new File(context.get(INSTANCE));
+		return compiler.isFile() ? compiler : null;
+	}
+
+	private static List<String> compileArguments(
+			final Context context,
+			final String target,
+			final List<String> settings,
+			final String namespace,
+			final String version,
+			final DatabaseInfo dbInfo,
+			final List<File> dsls,
+			final String library,
+			final String configuration) throws ExitException {
 		final List<String> arguments = new ArrayList<String>();
 		arguments.add("target=" + target);
 		if (namespace != null && namespace.length() > 0) {
@@ -69,46 +251,236 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			arguments.add("dsl=" + f.getAbsolutePath());
 		}
 		arguments.add("file-extension");
-		context.log("Compiling DSL to " + target + "...");
-		final long start = new Date().getTime();
-		final Either<byte[]> response = runCompiler(context, arguments);
-		if (!response.isSuccess()) {
-			context.error(response.whyNot());
-			throw new ExitException();
+		return arguments;
+	}
+
+	//when compiler is connected through a socket, request is sent immediately and response is collected on get()
+	//this way several targets can be requested without waiting on each other.
+	//ExitException as failure means that the error was already reported
+	public static Future<Either<Map<String, String>>> compileAsync(
+			final Context context,
+			final String target,
+			final List<String> settings,
+			final String namespace,
+			final String version,
+			final DatabaseInfo dbInfo,
+			final List<File> dsls,
+			final String library,
+			final String configuration) throws ExitException {
+		final SocketChannel socket = context.load(DSL_COMPILER_SOCKET);
+		if (socket == null) {
+			//without a connection there is nothing to overlap, so compile only when result is requested
+			return new CompileFuture(context, new Callable<Map<String, String>>() {
+				@Override
+				public Map<String, String> call() throws ExitException {
+					return compile(context, target, settings, namespace, version, dbInfo, dsls, library, configuration);
+				}
+			});
+		}
+		final List<String> arguments = compileArguments(context, target, settings, namespace, version, dbInfo, dsls, library, configuration);
+		final Map<String, String> files = new HashMap<String, String>();
+		final SourceSink output = new SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+				files.put(name, content);
+			}
+		};
+		final List<String> request = new ArrayList<String>(arguments);
+		final boolean json = !isKnown(context, DSL_COMPILER_NO_JSON);
+		if (json) {
+			request.add("format=json");
 		}
-		final long end = new Date().getTime();
-		context.show("Creating the source took " + (end - start) / 1000 + " second(s)");
+		request.add("path=" + System.getProperty("user.dir"));
+		context.notify("DSL", request);
+		context.log("Requesting " + target + " from DSL compiler...");
+		final CompilerPipeline.Pending response;
+		response = CompilerPipeline.get(context, socket).submit(buildCommand(request), null, output);
+		return new CompileFuture(context, target, files, arguments, json, response, output);
+	}
 
-		final Either<Document> xml = Utils.readXml(new ByteArrayInputStream(response.get()));
-		if (!xml.isSuccess()) {
-			context.error(new String(response.get(), UTF_8));
-			throw new ExitException();
+	private static class CompileFuture implements Future<Either<Map<String, String>>> {
+		private final Context context;
+		private final String target;
+		private final long start = BuildReport.start();
+		private final Callable<Map<String, String>> local;
+		private final Map<String, String> files;
+		private final List<String> arguments;
+		private final boolean json;
+		private final CompilerPipeline.Pending response;
+		private final SourceSink output;
+		private Either<Map<String, String>> result;
+
+		CompileFuture(final Context context, final Callable<Map<String, String>> local) {
+			this.context = context;
+			this.target = null;
+			this.local = local;
+			this.files = null;
+			this.arguments = null;
+			this.json = false;
+			this.response = null;
+			this.output = null;
 		}
-		final NodeList nodes = xml.get().getDocumentElement().getChildNodes();
-		try {
-			for (int i = 0; i < nodes.getLength(); i++) {
-				final Element item = (Element) nodes.item(i);
-				final Node key = item.getElementsByTagName("Key").item(0);
-				final Node value = item.getElementsByTagName("Value").item(0);
-				files.put(key.getTextContent(), value.getTextContent());
-			}
-		} catch (final Exception ex) {
-			context.error("Invalid xml found");
-			context.error(new String(response.get(), UTF_8));
-			throw new ExitException();
+
+		CompileFuture(
+				final Context context,
+				final String target,
+				final Map<String, String> files,
+				final List<String> arguments,
+				final boolean json,
+				final CompilerPipeline.Pending response,
+				final SourceSink output) {
+			this.context = context;
+			this.target = target;
+			this.local = null;
+			this.files = files;
+			this.arguments = arguments;
+			this.json = json;
+			this.response = response;
+			this.output = output;
+		}
+
+		@Override
+		public boolean cancel(final boolean mayInterruptIfRunning) {
+			return false;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public synchronized boolean isDone() {
+			return response == null ? result != null : response.isDone();
+		}
+
+		@Override
+		public Either<Map<String, String>> get() throws InterruptedException, ExecutionException {
+			if (response == null) return runLocal();
+			final long waiting = BuildReport.start();
+			return finish(response.get(), waiting);
+		}
+
+		@Override
+		public Either<Map<String, String>> get(final long timeout, final TimeUnit unit)
+				throws InterruptedException, ExecutionException, TimeoutException {
+			if (response == null) return runLocal();
+			final long waiting = BuildReport.start();
+			return finish(response.get(timeout, unit), waiting);
+		}
+
+		private synchronized Either<Map<String, String>> runLocal() {
+			if (result == null) {
+				try {
+					result = Either.success(local.call());
+				} catch (Exception ex) {
+					result = Either.fail(ex);
+				}
+			}
+			return result;
+		}
+
+		private synchronized Either<Map<String, String>> finish(Either<byte[]> value, final long waiting) {
+			if (result != null) {
+				return result;
+			}
+			//response could have arrived while previous targets were built
+			BuildReport.span(context, "compiler request", target, start, response.completedOn);
+			BuildReport.span(context, "compiler wait", target, waiting);
+			try {
+				if (json) {
+					final Either<byte[]> plain = checkJsonSupport(context, arguments, output, value);
+					if (plain != null) {
+						value = plain;
+					}
+				}
+			} catch (ExitException ex) {
+				value = Either.fail(ex);
+			}
+			if (value.isSuccess()) {
+				context.log("Received " + files.size() + " file(s) from DSL compiler");
+				context.notify("SOURCES", files);
+				result = Either.success(files);
+			} else {
+				result = Either.fail(value.whyNot());
+			}
+			return result;
 		}
-		context.notify("SOURCES", files);
-		return files;
 	}
 
 	private static Either<byte[]> runCompiler(Context context, List<String> arguments) throws ExitException {
-		final Socket socket = context.load(DSL_COMPILER_SOCKET);
-		final File compiler = new File(context.get(INSTANCE));
+		return runCompiler(context, arguments, null);
+	}
+
+	//older compilers don't understand a list of targets and reply with unknown target.
+	//Other errors come from the DSL and would fail in the same way when targets are compiled one by one
+	private static final Pattern MULTI_TARGET_UNSUPPORTED =
+			Pattern.compile("\\b(unknown|unrecognized|unsupported|invalid) target", Pattern.CASE_INSENSITIVE);
+
+	static boolean isMultiTargetUnsupported(final String error) {
+		return error != null && MULTI_TARGET_UNSUPPORTED.matcher(error).find();
+	}
+
+	//json is set when returned response was requested with format=json and compiler accepted it
+	private static Either<byte[]> runCompilerJson(
+			final Context context,
+			final List<String> arguments,
+			final boolean[] json,
+			final SourceSink sink) throws ExitException {
+		if (!isKnown(context, DSL_COMPILER_NO_JSON)) {
+			final List<String> jsonArguments = new ArrayList<String>(arguments);
+			jsonArguments.add("format=json");
+			final Either<byte[]> response = runCompiler(context, jsonArguments, sink);
+			final Either<byte[]> plain = checkJsonSupport(context, arguments, sink, response);
+			if (plain == null) {
+				json[0] = true;
+				return response;
+			}
+			return plain;
+		}
+		return runCompiler(context, new ArrayList<String>(arguments), sink);
+	}
+
+	//support for format=json is learned once per compiler. When a JSON request fails before that, it's repeated without it.
+	//Compiler doesn't understand format=json when the outcome is different.
+	//Returns null when JSON response should be used, otherwise the response without format=json
+	private static Either<byte[]> checkJsonSupport(
+			final Context context,
+			final List<String> arguments,
+			final SourceSink sink,
+			final Either<byte[]> jsonResponse) throws ExitException {
+		if (isKnown(context, DSL_COMPILER_JSON)) {
+			return null;
+		}
+		if (jsonResponse.isSuccess()) {
+			remember(context, DSL_COMPILER_JSON);
+			return null;
+		}
+		final Either<byte[]> plain = runCompiler(context, new ArrayList<String>(arguments), sink);
+		if (!plain.isSuccess() && String.valueOf(plain.explainError()).equals(String.valueOf(jsonResponse.explainError()))) {
+			remember(context, DSL_COMPILER_JSON);
+			return null;
+		}
+		context.log("DSL compiler doesn't support JSON output. Falling back to XML");
+		remember(context, DSL_COMPILER_NO_JSON);
+		return plain;
+	}
+
+	//when sink is provided, files are passed to it and no response body is returned.
+	//Process output is decoded while it's being read. Socket response is read fully before decoding
+	private static Either<byte[]> runCompiler(Context context, List<String> arguments, SourceSink sink) throws ExitException {
+		awaitValidation(context);
+		final SocketChannel socket = context.load(DSL_COMPILER_SOCKET);
 		arguments.add("path=" + System.getProperty("user.dir"));
 		context.notify("DSL", arguments);
-		return socket != null
-				? runCompilerSocket(context, socket, arguments)
-				: runCompilerFile(context, compiler, arguments);
+		if (socket != null) {
+			return runCompilerSocket(context, socket, arguments, sink);
+		}
+		final ServerPool pool = ServerPool.get(context);
+		if (pool != null) {
+			return pool.run(buildCommand(arguments), sink);
+		}
+		return runCompilerFile(context, new File(context.get(INSTANCE)), arguments, sink);
 	}
 
 	public static class ParseError {
@@ -139,6 +511,11 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			Object err = map.get("Error");
 			this.error = err != null ? new ParseError((Map<String, Object>) err) : null;
 		}
+
+		ParseResult(List<SyntaxConcept> tokens) {
+			this.tokens = tokens;
+			this.error = null;
+		}
 	}
 
 	public enum SyntaxType {
@@ -176,9 +553,21 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			this.line = map.containsKey("Line") ? ((Number) map.get("Line")).intValue() : 0;
 			this.column = map.containsKey("Column") ? ((Number) map.get("Column")).intValue() : 0;
 		}
+
+		private SyntaxConcept(SyntaxConcept other, int line) {
+			this.type = other.type;
+			this.value = other.value;
+			this.script = other.script;
+			this.line = line;
+			this.column = other.column;
+		}
+
+		SyntaxConcept moveTo(int line) {
+			return new SyntaxConcept(this, line);
+		}
 	}
 
-	private static class ByteStream extends ByteArrayOutputStream {
+	static class ByteStream extends ByteArrayOutputStream {
 		private final byte[] temp = new byte[8192];
 
 		byte[] getBuffer() {
@@ -186,15 +575,6 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 		}
 	}
 
-	private static int readInt(final byte[] buf) {
-		int ret = 0;
-		for (int i = 0; i < 4; i++) {
-			ret <<= 8;
-			ret |= (int) buf[i] & 0xFF;
-		}
-		return ret;
-	}
-
 	@SuppressWarnings("unchecked")
 	public static class RuleInfo {
 		public final String rule;
@@ -211,33 +591,56 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			this.children = ch != null ? ch.toArray(new String[0]) : new String[0];
 			this.description = de != null ? de : "";
 		}
+
+		RuleInfo(final String rule, final String grammar, final String[] children, final String description) {
+			this.rule = rule;
+			this.grammar = grammar;
+			this.children = children;
+			this.description = description;
+		}
 	}
 
 	public static class TokenParser implements Closeable {
+		//channel reads can't time out, so responses are awaited with a timeout instead
+		private static final long TIMEOUT = 10000;
+		private static final long CANCEL_CHECK = 20;
+
 		private final Context context;
 		private final File compiler;
 		private final Map<String, RuleInfo> rules = new HashMap<String, RuleInfo>();
+		private RuleCache ruleCache;
 
 		private int port;
-		private Socket socket;
-		private Process process;
+		private SocketChannel socket;
+		private CompilerDaemon.Lease lease;
 		private long startedOn;
+		private boolean incremental = true;
+		private String lastDsl;
+		private ParseResult lastResult;
+		private final Object requests = new Object();
+		private final Map<Object, ParseRequest> queued = new LinkedHashMap<Object, ParseRequest>();
+		private final Map<Object, Long> latestVersions = new WeakHashMap<Object, Long>();
+		private ParseRequest running;
+		private Thread worker;
 
 		public int getPort() {
 			return port;
 		}
 
-		TokenParser(final Context context, final File compiler, final int port, final Process process) {
+		TokenParser(final Context context, final File compiler, final CompilerDaemon.Lease lease) {
 			this.context = context;
 			this.compiler = compiler;
-			setupMonitor(port, process, this);
+			setupMonitor(lease);
 		}
 
 		public Either<RuleInfo> findRule(String name) {
 			if (name != null) {
-				if (rules.isEmpty()) {
+				if (rules.isEmpty() && ruleCache == null) {
+					ruleCache = RuleCache.load(context, compiler);
+				}
+				if (rules.isEmpty() && ruleCache == null) {
 					try {
-						Socket sck = setupSocket();
+						SocketChannel sck = setupSocket();
 						if (sck == null) {
 							return Either.fail("Unable to setup socket.");
 						}
@@ -248,107 +651,111 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 						for (RuleInfo ri : newRules.get()) {
 							rules.put(ri.rule, ri);
 						}
+						RuleCache.save(context, compiler, newRules.get());
 					} catch (Exception ex) {
 						return Either.fail("Unable to load rules: " + ex.getMessage());
 					}
 				}
 				RuleInfo rule = rules.get(name);
+				if (rule == null && ruleCache != null) {
+					rule = ruleCache.find(name);
+					if (rule != null) rules.put(name, rule);
+				}
 				if (rule != null) return Either.success(rule);
-				else Either.fail("Unknown rule: " + name);
+				else return Either.fail("Unknown rule: " + name);
 			}
 			return Either.fail("Rule name can't be null");
 		}
 
-		private void setupMonitor(final int port, final Process process, final TokenParser parser) {
-			parser.port = port;
-			parser.process = process;
-			context.show("Started DSL Platform compiler at port: " + port);
-			final Thread waitExit = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					try {
-						process.waitFor();
-					} catch (Exception ignore) {
-					}
-					context.show("DSL Platform compiler process stopped");
-					parser.process = null;
-				}
-			});
-			waitExit.setDaemon(true);
-			waitExit.start();
-			final Thread consumeOutput = new Thread(new Runnable() {
-				@Override
-				public void run() {
-					final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-					final char[] buffer = new char[8192];
-					int len;
-					try {
-						while ((len = reader.read(buffer)) != -1) {
-							context.log(new String(buffer, 0, len));
-						}
-						reader.close();
-					} catch (IOException ignore) {
-					}
-				}
-			});
-			consumeOutput.setDaemon(true);
-			consumeOutput.start();
+		private void setupMonitor(final CompilerDaemon.Lease lease) {
+			this.port = lease.port;
+			this.lease = lease;
 			startedOn = (new Date()).getTime();
 		}
 
 		public Either<ParseResult> parse(String dsl) {
+			return parse(dsl, null);
+		}
+
+		//request is checked while waiting on the compiler, so a newer version doesn't wait for the stale one
+		private synchronized Either<ParseResult> parse(final String dsl, final ParseRequest request) {
 			try {
-				if (process == null) {
-					final Random rnd = new Random();
-					final int port = rnd.nextInt(40000) + 20000;
-					final Either<Process> tryProcess = startServerMode(context, compiler, port);
-					if (!tryProcess.isSuccess()) {
-						return Either.fail(tryProcess.whyNot());
+				if (lease == null || !lease.isAlive()) {
+					if (lease != null) {
+						context.show("DSL Platform compiler process stopped");
+						socketCleanup(false);
+						stopServer();
 					}
-					setupMonitor(port, tryProcess.get(), this);
+					final Either<CompilerDaemon.Lease> tryLease = CompilerDaemon.acquire(context, compiler);
+					if (!tryLease.isSuccess()) {
+						return Either.fail(tryLease.whyNot());
+					}
+					setupMonitor(tryLease.get());
 					return Either.fail("Server restarting...");
 				}
-				Either<ParseResult> result = parseTokens(setupSocket(), dsl);
+				if (lastResult != null && dsl.equals(lastDsl)) {
+					return Either.success(lastResult);
+				}
+				if (incremental && lastResult != null && lastResult.error == null) {
+					final ParseResult spliced = parseChangedBlock(dsl, request);
+					if (spliced != null) {
+						return remember(dsl, Either.success(spliced));
+					}
+				}
+				Either<ParseResult> result = parseTokens(setupSocket(), dsl, request);
 				if (!result.isSuccess()) {
 					socketCleanup(false);
-					result = parseTokens(setupSocket(), dsl);
+					result = parseTokens(setupSocket(), dsl, request);
 				}
 				if (!result.isSuccess()) {
 					socketCleanup(true);
 				}
-				return result;
+				return remember(dsl, result);
+			} catch (CancellationException ex) {
+				//connection is fine. Stale response is dropped by the pipeline
+				return Either.fail("Cancelled");
 			} catch (Exception ex) {
 				socketCleanup(true);
+				lastDsl = null;
+				lastResult = null;
 				return Either.fail(ex);
 			}
 		}
 
+		//incremental parsing is enabled by default and falls back to full parsing when edit can't be isolated
+		public void setIncremental(final boolean incremental) {
+			this.incremental = incremental;
+		}
+
+		private Either<ParseResult> remember(final String dsl, final Either<ParseResult> result) {
+			lastDsl = result.isSuccess() ? dsl : null;
+			lastResult = result.isSuccess() ? result.get() : null;
+			return result;
+		}
+
+		private ParseResult parseChangedBlock(final String dsl, final ParseRequest request) throws ExitException, IOException {
+			final IncrementalTokens.Region region = IncrementalTokens.find(lastDsl, dsl);
+			if (region == null) {
+				return null;
+			}
+			final Either<ParseResult> block = parseTokens(setupSocket(), region.text, request);
+			//errors are reported from the full parse, so they are consistent with the rest of the document
+			if (!block.isSuccess() || block.get().error != null || block.get().tokens.isEmpty()) {
+				return null;
+			}
+			return new ParseResult(IncrementalTokens.splice(lastResult.tokens, region, block.get().tokens));
+		}
+
 		@SuppressWarnings("unchecked")
-		private Either<List<RuleInfo>> loadRules(final Socket socket) {
+		private Either<List<RuleInfo>> loadRules(final SocketChannel socket) {
 			final String command = "format=json rules include-length keep-alive\n";
 			try {
-				final OutputStream sos = socket.getOutputStream();
-				sos.write(command.getBytes(UTF_8));
-				sos.flush();
-				final ByteStream os = getByteStream(context);
-				final byte[] buf = os.temp;
-				final InputStream is = socket.getInputStream();
-				int read = is.read(buf, 0, 4);
-				if (read != 4 || buf[0] != 'O') {
-					return Either.fail("Invalid response from server.");
-				}
-				read = is.read(buf, 0, 4);
-				if (read != 4) {
-					return Either.fail("Invalid response from server. Expecting length.");
-				}
-				int length = readInt(buf);
-				os.reset();
-				while (length > 0 && (read = is.read(buf)) > 0) {
-					length -= read;
-					os.write(buf, 0, read);
-				}
-				os.flush();
-				final List<Object> result = JSON.readList(os.getBuffer(), os.size());
+				final Either<byte[]> response = CompilerPipeline.get(context, socket).submit(command, null, null).get(TIMEOUT, TimeUnit.MILLISECONDS);
+				if (!response.isSuccess()) {
+					return Either.fail("Invalid response from server. " + response.explainError());
+				}
+				final byte[] body = response.get();
+				final List<Object> result = JSON.readList(body, body.length);
 				final List<RuleInfo> rules = new ArrayList<RuleInfo>(result.size());
 				for (Object it : result) {
 					rules.add(new RuleInfo((Map<String, Object>) it));
@@ -356,42 +763,56 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 				return Either.success(rules);
 			} catch (IOException e) {
 				return Either.fail(e.getMessage());
+			} catch (InterruptedException e) {
+				return Either.fail(e.getMessage());
+			} catch (TimeoutException e) {
+				return Either.fail("Timeout waiting for rules from DSL Platform compiler");
 			}
 		}
 
-		private Either<ParseResult> parseTokens(final Socket socket, final String dsl) throws IOException {
+		private Either<ParseResult> parseTokens(final SocketChannel socket, final String dsl, final ParseRequest request) throws IOException {
+			if (request != null && request.isCancelled()) {
+				throw new CancellationException();
+			}
 			final byte[] dslUtf8 = dsl.getBytes(UTF_8);
 			final String command = "tokens=" + dslUtf8.length + " format=json include-length keep-alive\n";
 			try {
-				final OutputStream sos = socket.getOutputStream();
-				sos.write(command.getBytes(UTF_8));
-				sos.write(dslUtf8);
-				sos.flush();
-				final ByteStream os = getByteStream(context);
-				final byte[] buf = os.temp;
-				final InputStream is = socket.getInputStream();
-				int read = is.read(buf, 0, 4);
-				if (read != 4 || buf[0] != 'O') {
-					return Either.fail("Invalid response from server.");
-				}
-				read = is.read(buf, 0, 4);
-				if (read != 4) {
-					return Either.fail("Invalid response from server. Expecting length.");
-				}
-				int length = readInt(buf);
-				os.reset();
-				while (length > 0 && (read = is.read(buf)) > 0) {
-					length -= read;
-					os.write(buf, 0, read);
-				}
-				os.flush();
-				return Either.success(new ParseResult(JSON.readMap(os.getBuffer(), os.size())));
+				final Either<byte[]> response = await(CompilerPipeline.get(context, socket).submit(command, dslUtf8, null), request);
+				if (!response.isSuccess()) {
+					return Either.fail("Invalid response from server. " + response.explainError());
+				}
+				final byte[] body = response.get();
+				return Either.success(new ParseResult(JSON.readMap(body, body.length)));
 			} catch (IOException e) {
 				return Either.fail(e.getMessage());
+			} catch (InterruptedException e) {
+				return Either.fail(e.getMessage());
+			} catch (TimeoutException e) {
+				return Either.fail("Timeout waiting for tokens from DSL Platform compiler");
 			}
 		}
 
-		private Socket setupSocket() throws ExitException, IOException {
+		private static Either<byte[]> await(final Future<Either<byte[]>> response, final ParseRequest request)
+				throws InterruptedException, TimeoutException {
+			final long deadline = System.currentTimeMillis() + TIMEOUT;
+			while (true) {
+				if (request != null && request.isCancelled()) {
+					throw new CancellationException();
+				}
+				final long remaining = deadline - System.currentTimeMillis();
+				if (remaining <= 0) {
+					throw new TimeoutException();
+				}
+				try {
+					return response.get(Math.min(remaining, CANCEL_CHECK), TimeUnit.MILLISECONDS);
+				} catch (TimeoutException ignore) {
+				} catch (ExecutionException ex) {
+					return Either.fail(ex);
+				}
+			}
+		}
+
+		private SocketChannel setupSocket() throws ExitException, IOException {
 			if (socket != null) return socket;
 			context.put(INSTANCE, Integer.toString(port));
 			if (!INSTANCE.check(context)) {
@@ -399,12 +820,6 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			}
 			context.show("Socket connected");
 			socket = context.load(DSL_COMPILER_SOCKET);
-			if (socket != null) {
-				try {
-					socket.setSoTimeout(10000);
-				} catch (Exception ignore) {
-				}
-			}
 			return socket;
 		}
 
@@ -413,7 +828,7 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			if (restartServer && now > startedOn + 60000) {
 				stopServer();
 			}
-			final Socket sock = this.socket;
+			final SocketChannel sock = this.socket;
 			if (sock != null) {
 				try {
 					sock.close();
@@ -425,34 +840,181 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 		}
 
 		private void stopServer() {
-			final Process proc = process;
-			if (proc != null) {
-				context.show("Stopped DSL Platform compiler");
-				try {
-					proc.destroy();
-				} catch (Exception ignore) {
+			final CompilerDaemon.Lease current = lease;
+			if (current != null) {
+				context.show("Released DSL Platform compiler");
+				current.invalidate();
+				this.lease = null;
+			}
+		}
+
+		public interface ParseListener {
+			void parsed(Either<ParseResult> result);
+		}
+
+		public Future<Either<ParseResult>> parseAsync(final Object document, final String dsl, final long version) {
+			return parseAsync(document, dsl, version, null);
+		}
+
+		//only the latest version of each document is parsed. Documents are compared with equals.
+		//Queued requests are replaced by newer ones and a running request stops waiting on the compiler
+		//when a newer version arrives. Listener is notified from the parser thread, unless request was cancelled
+		public Future<Either<ParseResult>> parseAsync(
+				final Object document,
+				final String dsl,
+				final long version,
+				final ParseListener listener) {
+			final ParseRequest request = new ParseRequest(document, dsl, version, listener);
+			synchronized (requests) {
+				final Long latest = latestVersions.get(document);
+				if (latest != null && version < latest) {
+					request.cancel(false);
+					return request;
+				}
+				latestVersions.put(document, version);
+				final ParseRequest previous = queued.put(document, request);
+				if (previous != null) {
+					previous.cancel(false);
+				}
+				if (running != null && running.document.equals(document) && running.version < version) {
+					running.cancel(false);
+				}
+				if (worker == null) {
+					worker = new Thread(new Runnable() {
+						@Override
+						public void run() {
+							processRequests();
+						}
+					}, "dsl-token-parser");
+					worker.setDaemon(true);
+					worker.start();
+				}
+				requests.notifyAll();
+			}
+			return request;
+		}
+
+		private void processRequests() {
+			while (true) {
+				final ParseRequest request;
+				synchronized (requests) {
+					while (queued.isEmpty()) {
+						try {
+							requests.wait();
+						} catch (InterruptedException ex) {
+							return;
+						}
+					}
+					final Iterator<ParseRequest> iterator = queued.values().iterator();
+					request = iterator.next();
+					iterator.remove();
+					running = request;
+				}
+				final Either<ParseResult> result = request.isCancelled()
+						? Either.<ParseResult>fail("Cancelled")
+						: parse(request.dsl, request);
+				synchronized (requests) {
+					running = null;
 				}
-				this.process = null;
+				request.complete(result);
+			}
+		}
+
+		private static class ParseRequest implements Future<Either<ParseResult>> {
+			final Object document;
+			final String dsl;
+			final long version;
+			private final ParseListener listener;
+			private final CountDownLatch done = new CountDownLatch(1);
+			private volatile boolean cancelled;
+			private Either<ParseResult> result;
+
+			ParseRequest(final Object document, final String dsl, final long version, final ParseListener listener) {
+				this.document = document;
+				this.dsl = dsl;
+				this.version = version;
+				this.listener = listener;
+			}
+
+			void complete(final Either<ParseResult> value) {
+				synchronized (this) {
+					if (done.getCount() == 0) {
+						return;
+					}
+					result = value;
+					done.countDown();
+				}
+				if (listener != null) {
+					listener.parsed(value);
+				}
+			}
+
+			@Override
+			public synchronized boolean cancel(final boolean mayInterruptIfRunning) {
+				if (done.getCount() == 0) {
+					return false;
+				}
+				cancelled = true;
+				done.countDown();
+				return true;
+			}
+
+			@Override
+			public boolean isCancelled() {
+				return cancelled;
+			}
+
+			@Override
+			public boolean isDone() {
+				return done.getCount() == 0;
+			}
+
+			@Override
+			public Either<ParseResult> get() throws InterruptedException {
+				done.await();
+				if (cancelled) throw new CancellationException("Newer version was requested: " + version);
+				return result;
+			}
+
+			@Override
+			public Either<ParseResult> get(final long timeout, final TimeUnit unit) throws InterruptedException, TimeoutException {
+				if (!done.await(timeout, unit)) throw new TimeoutException();
+				if (cancelled) throw new CancellationException("Newer version was requested: " + version);
+				return result;
 			}
 		}
 
 		public void close() {
-			stopServer();
+			synchronized (requests) {
+				if (worker != null) {
+					worker.interrupt();
+					worker = null;
+				}
+				for (final ParseRequest r : queued.values()) {
+					r.cancel(false);
+				}
+				queued.clear();
+			}
+			socketCleanup(false);
+			final CompilerDaemon.Lease current = lease;
+			if (current != null) {
+				current.close();
+				this.lease = null;
+			}
 		}
 	}
 
 	public static Either<TokenParser> setupServer(final Context context, final File compiler) {
 		context.show("Starting DSL Platform compiler...");
-		final Random rnd = new Random();
-		final int port = rnd.nextInt(40000) + 20000;
-		final Either<Process> tryProcess = startServerMode(context, compiler, port);
-		if (!tryProcess.isSuccess()) {
-			return Either.fail(tryProcess.whyNot());
+		final Either<CompilerDaemon.Lease> tryLease = CompilerDaemon.acquire(context, compiler);
+		if (!tryLease.isSuccess()) {
+			return Either.fail(tryLease.whyNot());
 		}
-		return Either.success(new TokenParser(context, compiler, port, tryProcess.get()));
+		context.put(INSTANCE, Integer.toString(tryLease.get().port));
+		return Either.success(new TokenParser(context, compiler, tryLease.get()));
 	}
 
-	private static Either<Process> startServerMode(final Context context, final File compiler, final int port) {
+	static Either<Process> startServerProcess(final Context context, final File compiler, final int port) {
 		final List<String> arguments = new ArrayList<String>();
 		arguments.add(compiler.getAbsolutePath());
 		arguments.add("server-mode");
@@ -477,7 +1039,6 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			}
 		}
 		final ProcessBuilder pb = new ProcessBuilder(arguments);
-		context.put(INSTANCE, Integer.toString(port));
 		try {
 			return Either.success(pb.start());
 		} catch (IOException e) {
@@ -493,10 +1054,7 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 		return false;
 	}
 
-	private static Either<byte[]> runCompilerSocket(
-			final Context context,
-			final Socket socket,
-			final List<String> arguments) throws ExitException {
+	static String buildCommand(final List<String> arguments) {
 		final StringBuilder sb = new StringBuilder();
 		for (String arg : arguments) {
 			if (!arg.startsWith("\"") && hasWhitespace(arg)) {
@@ -509,58 +1067,66 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			sb.append(' ');
 		}
 		sb.append("include-length keep-alive\n");
+		return sb.toString();
+	}
+
+	private static Either<byte[]> runCompilerSocket(
+			final Context context,
+			final SocketChannel socket,
+			final List<String> arguments,
+			final SourceSink sink) throws ExitException {
+		//concurrent requests are pipelined on the single connection
 		try {
-			final OutputStream sos = socket.getOutputStream();
-			sos.write(sb.toString().getBytes(UTF_8));
-			sos.flush();
-			final ByteStream os = getByteStream(context);
-			final byte[] buf = os.temp;
-			final InputStream is = socket.getInputStream();
-			int read = is.read(buf, 0, 4);
-			final boolean success = read == 4 && buf[0] == 'O';
-			read = is.read(buf, 0, 4);
-			if (read != 4) {
-				return Either.fail("Invalid response from server. Expecting length.");
-			}
-			int length = readInt(buf);
-			context.log("Response size from DSL compiler: " + length);
-			os.reset();
-			while (length > 0 && (read = is.read(buf)) > 0) {
-				length -= read;
-				os.write(buf, 0, read);
-			}
-			os.flush();
-			if (!success) {
-				return Either.fail(os.toString("UTF-8"));
-			}
-			return Either.success(os.toByteArray());
-		} catch (IOException e) {
+			return CompilerPipeline.get(context, socket).submit(buildCommand(arguments), null, sink).get();
+		} catch (InterruptedException e) {
 			context.error(e);
 			throw new ExitException();
 		}
 	}
 
-	private static ByteStream getByteStream(Context context) {
-		ByteStream os = context.load("dsl-stream");
-		if (os == null) {
-			os = new ByteStream();
-			context.cache("dsl-stream", os);
+	//only socket failures are thrown. Response is read fully before anything reaches the sink,
+	//so a request can be sent again without duplicating files. Decode and sink errors are returned as failure
+	static Either<byte[]> sendCommand(
+			final Context context,
+			final SocketChannel socket,
+			final ByteBuffer header,
+			final String command,
+			final SourceSink sink) throws IOException {
+		CompilerChannel.write(socket, command, null);
+		final CompilerChannel.Response response = CompilerChannel.read(socket, header, CompilerChannel.RESPONSE_TIMEOUT);
+		try {
+			context.log("Response size from DSL compiler: " + response.body.limit());
+			if (!response.success) {
+				return Either.fail(response.text());
+			}
+			if (sink != null) {
+				try {
+					readSources(response.body.array(), response.body.limit(), sink);
+				} catch (IOException ex) {
+					return Either.fail("Unable to process response from DSL compiler", ex);
+				}
+				return Either.success(null);
+			}
+			return Either.success(response.copy());
+		} finally {
+			response.release();
 		}
-		return os;
 	}
 
 	private static Either<byte[]> runCompilerFile(
 			final Context context,
 			final File compiler,
-			final List<String> arguments) throws ExitException {
+			final List<String> arguments,
+			final SourceSink sink) throws ExitException {
+		final StreamingOutput streaming = sink != null ? new StreamingOutput(sink) : null;
 		Either<Utils.CommandResult> result;
 		if (Utils.isWindows()) {
-			result = Utils.runCommand(context, compiler.getAbsolutePath(), compiler.getParentFile(), arguments, Charset.forName("UTF-8"));
+			result = Utils.runCommand(context, compiler.getAbsolutePath(), compiler.getParentFile(), arguments, Charset.forName("UTF-8"), streaming);
 		} else {
 			final Either<String> mono = Mono.findMono(context);
 			if (mono.isSuccess()) {
 				arguments.add(0, compiler.getAbsolutePath());
-				result = Utils.runCommand(context, mono.get(), compiler.getParentFile(), arguments);
+				result = Utils.runCommand(context, mono.get(), compiler.getParentFile(), arguments, Charset.defaultCharset(), streaming);
 				if(!result.isSuccess() && promptUserMonoRetry(context)) {
 					context.warning("Retrying ...");
 					context.error(result.whyNot());
@@ -569,7 +1135,7 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 					} catch (InterruptedException ignore) {
 						throw new ExitException();
 					}
-					result = Utils.runCommand(context, mono.get(), compiler.getParentFile(), arguments, Charset.forName("UTF-8"));
+					result = Utils.runCommand(context, mono.get(), compiler.getParentFile(), arguments, Charset.forName("UTF-8"), streaming);
 				}
 			} else {
 				context.error("Mono is required to run DSL compiler. Mono not detected or specified.");
@@ -579,10 +1145,92 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 		if (!result.isSuccess()) {
 			return Either.fail(result.whyNot());
 		}
+		final String output = streaming != null ? streaming.text : result.get().output;
 		if (result.get().exitCode != 0) {
-			return Either.fail(result.get().output + result.get().error);
+			return Either.fail(output + result.get().error);
+		}
+		if (streaming != null) {
+			return streaming.text.length() == 0 ? Either.<byte[]>success(null) : Either.<byte[]>fail(streaming.text);
+		}
+		return Either.success(output.getBytes(UTF_8));
+	}
+
+	private static int peek(final BufferedInputStream stream) throws IOException {
+		stream.mark(1);
+		final int first = stream.read();
+		stream.reset();
+		return first;
+	}
+
+	//JSON is decoded from a single buffer, while XML is decoded as it arrives
+	static void readSources(
+			final BufferedInputStream stream,
+			final ByteStream os,
+			final SourceSink sink) throws IOException {
+		final int first = peek(stream);
+		if (first == '{' || first == '[') {
+			os.reset();
+			final byte[] buf = os.temp;
+			int read;
+			while ((read = stream.read(buf)) != -1) {
+				os.write(buf, 0, read);
+			}
+			readSources(os.getBuffer(), os.size(), sink);
+		} else {
+			XmlSourceReader.read(stream, sink);
+		}
+	}
+
+	//decodes the response in place, without copying it into another buffer
+	static void readSources(final byte[] body, final int length, final SourceSink sink) throws IOException {
+		if (length > 0 && (body[0] == '{' || body[0] == '[')) {
+			JSON.readPairs(body, length, new JSON.PairHandler() {
+				@Override
+				public void pair(final String key, final String value) throws IOException {
+					sink.add(key, value);
+				}
+			});
+		} else {
+			XmlSourceReader.read(new ByteArrayInputStream(body, 0, length), sink);
+		}
+	}
+
+	//raw text, such as SQL, can start with a quoted identifier, so it's decoded only when JSON was requested and accepted
+	static String readText(final byte[] response, final boolean json) throws IOException {
+		if (!json) {
+			return new String(response, UTF_8);
+		}
+		int i = 0;
+		while (i < response.length && Character.isWhitespace(response[i])) {
+			i++;
+		}
+		if (i < response.length && response[i] == '"') {
+			final String text = JSON.readString(response, response.length);
+			return text != null ? text : "";
+		}
+		return new String(response, UTF_8);
+	}
+
+	private static class StreamingOutput implements Utils.OutputHandler {
+		private final SourceSink sink;
+		String text = "";
+
+		StreamingOutput(final SourceSink sink) {
+			this.sink = sink;
+		}
+
+		@Override
+		public void handle(final InputStream stream) throws IOException {
+			final BufferedInputStream bis = new BufferedInputStream(stream);
+			final int first = peek(bis);
+			//response starts either with a JSON, a tag or an UTF-8 BOM. Anything else is an error description
+			if (first == '{' || first == '[' || first == '<' || first == 0xEF) {
+				text = "";
+				readSources(bis, new ByteStream(), sink);
+			} else {
+				text = FileIO.read(bis);
+			}
 		}
-		return Either.success(result.get().output.getBytes(UTF_8));
 	}
 
 	public static Either<String> migration(
@@ -607,11 +1255,17 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			arguments.add("dsl=" + f.getAbsolutePath());
 		}
 		context.log("Creating SQL migration for " + dbInfo.database + " ...");
-		final Either<byte[]> result = runCompiler(context, arguments);
+		final boolean[] json = new boolean[1];
+		final Either<byte[]> result = runCompilerJson(context, arguments, json, null);
 		if (!result.isSuccess()) {
 			return Either.fail(result.whyNot());
 		}
-		final String sql = new String(result.get(), UTF_8);
+		final String sql;
+		try {
+			sql = readText(result.get(), json[0]);
+		} catch (IOException ex) {
+			return Either.fail("Invalid migration response from DSL compiler", ex);
+		}
 		return Either.success(context.notify("MIGRATION", sql));
 	}
 
@@ -622,7 +1276,7 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 				oldDsl.append(v);
 			}
 			final File previousDsl = new File(TempPath.getTempProjectPath(context), "old.dsl");
-			Utils.saveFile(context, previousDsl, oldDsl.toString());
+			FileIO.saveFile(context, previousDsl, oldDsl.toString());
 			arguments.add("previous-dsl=" + previousDsl.getAbsolutePath());
 			if (dbInfo.compilerVersion != null) {
 				arguments.add("previous-compiler=" + dbInfo.compilerVersion);
@@ -684,25 +1338,15 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			} catch (NumberFormatException ignore) {
 			}
 			if (port > 0) {
-				Socket socket;
+				final SocketChannel socket;
 				try {
-					socket = new Socket("::1", port);
-				} catch (Exception ex6) {
-					context.log("Unable to open socket to port on IPv6 localhost: " + value);
-					try {
-						socket = new Socket("127.0.0.1", port);
-					} catch (Exception ex4) {
-						context.error("Unable to open socket to port on localhost: " + value);
-						context.error(ex4);
-						throw new ExitException();
-					}
+					socket = CompilerChannel.connect(port);
+				} catch (IOException ex) {
+					context.error("Unable to open socket to port on localhost: " + value);
+					context.error(ex);
+					throw new ExitException();
 				}
 				if (socket.isConnected()) {
-					try {
-						socket.setKeepAlive(true);
-						socket.setSoTimeout(30000);
-					} catch (SocketException ignore) {
-					}
 					context.cache(DSL_COMPILER_SOCKET, socket);
 					return true;
 				} else {
@@ -726,6 +1370,12 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 				}
 			}
 			final File compiler = lookupDefaultPath(context);
+			//without download or a question to the user, invalid compiler can only be reported
+			if (isEmpty && compiler.exists() && !context.canInteract() && !context.contains(Download.INSTANCE)) {
+				context.put(INSTANCE, compiler.getAbsolutePath());
+				validateInBackground(context, compiler);
+				return true;
+			}
 			if (compiler.exists() && testCompiler(context, compiler)) {
 				if (isEmpty) {
 					if (context.contains(Download.INSTANCE)) {
@@ -733,6 +1383,7 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 						checkForLatestVersion(context, path, compiler.getParentFile(), compiler);
 					}
 					context.put(INSTANCE, compiler.getAbsolutePath());
+					ServerPool.warmUp(context);
 					return true;
 				}
 				if (context.canInteract()) {
@@ -741,6 +1392,7 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 									+ compiler.getAbsolutePath() + ". Do you wish to use it? (y/N)");
 					if ("y".equalsIgnoreCase(answer)) {
 						context.put(INSTANCE, compiler.getAbsolutePath());
+						ServerPool.warmUp(context);
 						return true;
 					}
 				}
@@ -753,16 +1405,55 @@ public enum DslCompiler implements CompileParameter, ParameterParser {
 			}
 			context.show("Downloading DSL Platform compiler since it's not found in: " + compiler.getAbsolutePath());
 			downloadCompiler(context, path, compiler.getParentFile(), compiler, true);
+			ServerPool.warmUp(context);
 		} else {
-			if (!testCompiler(context, path)) {
-				context.error("Specified compiler is invalid: " + path.getAbsolutePath());
-				throw new ExitException();
-			}
 			context.put(INSTANCE, path.getAbsolutePath());
+			validateInBackground(context, path);
 		}
 		return true;
 	}
 
+	//compiler is tested while remaining parameters are checked and it's awaited before the first request.
+	//Pool compilers are started only after the compiler was validated
+	private static void validateInBackground(final Context context, final File compiler) {
+		final FutureTask<Boolean> validation = new FutureTask<Boolean>(new Callable<Boolean>() {
+			@Override
+			public Boolean call() throws ExitException {
+				if (!testCompiler(context, compiler)) {
+					return false;
+				}
+				ServerPool.warmUp(context);
+				return true;
+			}
+		});
+		context.cache(DSL_COMPILER_VALIDATION, validation);
+		final Thread thread = new Thread(validation, "dsl-compiler-validation");
+		thread.setDaemon(true);
+		thread.start();
+	}
+
+	private static void awaitValidation(final Context context) throws ExitException {
+		final Future<Boolean> validation = context.load(DSL_COMPILER_VALIDATION);
+		if (validation == null) {
+			return;
+		}
+		final boolean valid;
+		try {
+			valid = validation.get();
+		} catch (InterruptedException ex) {
+			throw new ExitException();
+		} catch (ExecutionException ex) {
+			if (!(ex.getCause() instanceof ExitException)) {
+				context.error(ex);
+			}
+			throw new ExitException();
+		}
+		if (!valid) {
+			context.error("Specified compiler is invalid: " + context.get(INSTANCE));
+			throw new ExitException();
+		}
+	}
+
 	public static void checkForLatestVersion(Context context, File path, File compilerPath, File compiler) throws ExitException {
 		final Either<Long> lastModified = Download.lastModified(context, "dsl-compiler", "dsl-compiler.exe", compiler.lastModified());
 		if (!lastModified.isSuccess()) {
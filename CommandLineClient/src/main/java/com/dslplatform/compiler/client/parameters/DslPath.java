@@ -40,6 +40,7 @@ public enum DslPath implements CompileParameter {
 	}
 
 	private static void findDsls(final Context context) throws ExitException {
+		final long start = BuildReport.start();
 		String value = context.get(INSTANCE);
 		if (value == null) {
 			if (!(new File("./dsl").exists())) {
@@ -54,7 +55,7 @@ public enum DslPath implements CompileParameter {
 			final File dslPath = new File(part).getAbsoluteFile();
 			final List<File> dslFiles = dslPath.isFile()
 					? Collections.singletonList(dslPath)
-					: Utils.findFiles(context, dslPath, Arrays.asList(".dsl", ".ddd"));
+					: FileIO.findFiles(context, dslPath, Arrays.asList(".dsl", ".ddd"));
 			final File basePath = dslPath.isFile() ? dslPath.getParentFile() : dslPath;
 			final int pathLen = basePath.getAbsolutePath().length();
 			for (final File file : dslFiles) {
@@ -62,7 +63,7 @@ public enum DslPath implements CompileParameter {
 					context.error("Can't read DSL file: " + file.getName());
 					throw new ExitException();
 				}
-				final Either<String> content = Utils.readFile(file);
+				final Either<String> content = FileIO.readFile(file);
 				if (content.isSuccess()) {
 					final String relativeName = file.getAbsolutePath().substring(pathLen);
 					if (dslMap.containsKey(relativeName)) {
@@ -80,6 +81,7 @@ public enum DslPath implements CompileParameter {
 		}
 		context.cache(CACHE_MAP_NAME, dslMap);
 		context.cache(CACHE_FILE_NAME, allDslFiles);
+		BuildReport.span(context, "dsl discovery", start);
 	}
 
 	@Override
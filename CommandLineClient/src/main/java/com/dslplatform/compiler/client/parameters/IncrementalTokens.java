@@ -0,0 +1,170 @@
+package com.dslplatform.compiler.client.parameters;
+
+import java.util.ArrayList;
+import java.util.List;
+
+//tokens after the changed block are moved by the line difference
+abstract class IncrementalTokens {
+
+	static final class Region {
+		final String text;
+		final int startLine;
+		final int oldEndLine;
+		final int newEndLine;
+
+		private Region(final String text, final int startLine, final int oldEndLine, final int newEndLine) {
+			this.text = text;
+			this.startLine = startLine;
+			this.oldEndLine = oldEndLine;
+			this.newEndLine = newEndLine;
+		}
+	}
+
+	//start of the line with the block and position of its closing brace
+	private static final class Block {
+		final int start;
+		final int close;
+
+		Block(final int start, final int close) {
+			this.start = start;
+			this.close = close;
+		}
+	}
+
+	static Region find(final String oldText, final String newText) {
+		final int min = Math.min(oldText.length(), newText.length());
+		int prefix = 0;
+		while (prefix < min && oldText.charAt(prefix) == newText.charAt(prefix)) {
+			prefix++;
+		}
+		int suffix = 0;
+		while (suffix < min - prefix
+				&& oldText.charAt(oldText.length() - 1 - suffix) == newText.charAt(newText.length() - 1 - suffix)) {
+			suffix++;
+		}
+		final int editEnd = newText.length() - suffix;
+		final Block block = findBlock(newText, prefix, editEnd);
+		if (block == null) {
+			return null;
+		}
+		final int delta = newText.length() - oldText.length();
+		final Block oldBlock = findBlock(oldText, prefix, oldText.length() - suffix);
+		if (oldBlock == null || oldBlock.start != block.start || oldBlock.close != block.close - delta) {
+			return null;
+		}
+		return new Region(
+				newText.substring(block.start, block.close + 1),
+				countLines(newText, block.start),
+				countLines(oldText, oldBlock.close),
+				countLines(newText, block.close));
+	}
+
+	private static Block findBlock(final String text, final int from, final int to) {
+		final List<Block> blocks = topLevelBlocks(text);
+		if (blocks == null) {
+			return null;
+		}
+		for (final Block b : blocks) {
+			if (b.start <= from && to <= b.close) {
+				return b;
+			}
+		}
+		return null;
+	}
+
+	private static int countLines(final String text, final int end) {
+		int lines = 0;
+		for (int i = 0; i < end; i++) {
+			if (text.charAt(i) == '\n') lines++;
+		}
+		return lines;
+	}
+
+	//blocks must start and end on their own lines. Null when structure is not recognized
+	private static List<Block> topLevelBlocks(final String text) {
+		final List<Block> blocks = new ArrayList<Block>();
+		final int len = text.length();
+		int depth = 0;
+		int first = -1;
+		int i = 0;
+		while (i < len) {
+			final char c = text.charAt(i);
+			if (c == '/' && i + 1 < len && text.charAt(i + 1) == '/') {
+				while (i < len && text.charAt(i) != '\n') i++;
+				continue;
+			}
+			if (c == '/' && i + 1 < len && text.charAt(i + 1) == '*') {
+				final int end = text.indexOf("*/", i + 2);
+				if (end == -1) return null;
+				i = end + 2;
+				continue;
+			}
+			if (c == '"' || c == '\'') {
+				i++;
+				while (i < len && text.charAt(i) != c) {
+					if (text.charAt(i) == '\\') i++;
+					i++;
+				}
+				if (i >= len) return null;
+				i++;
+				continue;
+			}
+			if (depth == 0 && first == -1 && !Character.isWhitespace(c)) {
+				first = i;
+			}
+			if (c == '{') {
+				depth++;
+			} else if (c == '}') {
+				depth--;
+				if (depth < 0) return null;
+				if (depth == 0) {
+					final int start = text.lastIndexOf('\n', first) + 1;
+					if (!isBlank(text, start, first) || !isBlankUntilNewLine(text, i + 1)) {
+						return null;
+					}
+					blocks.add(new Block(start, i));
+					first = -1;
+				}
+			}
+			i++;
+		}
+		return depth == 0 ? blocks : null;
+	}
+
+	private static boolean isBlank(final String text, final int from, final int to) {
+		for (int i = from; i < to; i++) {
+			if (!Character.isWhitespace(text.charAt(i))) return false;
+		}
+		return true;
+	}
+
+	private static boolean isBlankUntilNewLine(final String text, final int from) {
+		for (int i = from; i < text.length() && text.charAt(i) != '\n'; i++) {
+			if (!Character.isWhitespace(text.charAt(i))) return false;
+		}
+		return true;
+	}
+
+	//tokens can be numbered from 0 or 1. First token of the block is on its first line, which is used as the base
+	static List<DslCompiler.SyntaxConcept> splice(
+			final List<DslCompiler.SyntaxConcept> old,
+			final Region region,
+			final List<DslCompiler.SyntaxConcept> block) {
+		final int base = block.get(0).line;
+		final int shift = region.startLine;
+		final int from = region.startLine + base;
+		final int to = region.oldEndLine + base;
+		final int delta = region.newEndLine - region.oldEndLine;
+		final List<DslCompiler.SyntaxConcept> result = new ArrayList<DslCompiler.SyntaxConcept>(old.size() + block.size());
+		for (final DslCompiler.SyntaxConcept t : old) {
+			if (t.line < from) result.add(t);
+		}
+		for (final DslCompiler.SyntaxConcept t : block) {
+			result.add(t.moveTo(t.line + shift));
+		}
+		for (final DslCompiler.SyntaxConcept t : old) {
+			if (t.line > to) result.add(delta == 0 ? t : t.moveTo(t.line + delta));
+		}
+		return result;
+	}
+}
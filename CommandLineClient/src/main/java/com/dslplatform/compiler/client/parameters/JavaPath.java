@@ -2,10 +2,12 @@ package com.dslplatform.compiler.client.parameters;
 
 import com.dslplatform.compiler.client.*;
 
-import java.io.File;
-import java.io.IOException;
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.jar.*;
 
 public enum JavaPath implements CompileParameter {
 	INSTANCE;
@@ -26,10 +28,6 @@ public enum JavaPath implements CompileParameter {
 		return getCommand(context, "javac", "Java compiler");
 	}
 
-	private static Either<String> getJarCommand(final Context context) {
-		return getCommand(context, "jar", "Java archive tool");
-	}
-
 	private static Either<String> getCommand(final Context context, final String name, final String description) {
 		if (context.contains(INSTANCE)) {
 			final String file = context.load(CACHE_FILE_PREFIX + name);
@@ -67,109 +65,139 @@ public enum JavaPath implements CompileParameter {
 		return Either.fail("Unable to find " + description + ". Add it to path or specify java compile option.");
 	}
 
-	private final static SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd-HH-mm");
+	//fixed local time keeps the same DOS date in archives built in every time zone
+	private static final long REPRODUCIBLE_TIME = new GregorianCalendar(2010, Calendar.JANUARY, 1).getTimeInMillis();
 
-	public static synchronized Either<Utils.CommandResult> makeArchive(
+	//archive is written directly, so several targets can package at the same time.
+	//entries are always sorted. In reproducible mode they also share a fixed time and default version is derived from the content
+	public static Either<File> makeArchive(
 			final Context context,
 			final File classOut,
 			final File output,
 			final Map<String, List<String>> services) {
-		final Either<String> tryJar = getJarCommand(context);
-		if (!tryJar.isSuccess()) {
-			return Either.fail(tryJar.whyNot());
+		final boolean reproducible = context.contains(Reproducible.INSTANCE);
+		final int len = classOut.getAbsolutePath().length() + 1;
+		final Map<String, File> classFiles = new TreeMap<String, File>();
+		for (final File f : FileIO.findFiles(context, classOut, Collections.singletonList(".class"))) {
+			classFiles.put(f.getAbsolutePath().substring(len).replace(File.separatorChar, '/'), f);
 		}
-		final String jar = tryJar.get();
-
-		final List<String> jarArguments = makeJarArguments(context, classOut, "class", output, services);
-
-		final File metaInf = new File(classOut, "META-INF");
-		final File manifest = new File(metaInf, "MANIFEST.MF");
-		if (!metaInf.exists()) {
-			if (!metaInf.mkdirs()) {
-				return Either.fail("Error creating: " + metaInf.getAbsolutePath());
+		final Map<String, byte[]> serviceFiles = new TreeMap<String, byte[]>();
+		if (services != null) {
+			for (final Map.Entry<String, List<String>> kv : services.entrySet()) {
+				final StringBuilder sb = new StringBuilder();
+				for (final String it : kv.getValue()) {
+					sb.append(it).append('\n');
+				}
+				serviceFiles.put("META-INF/services/" + kv.getKey(), FileIO.encode(sb.toString()));
 			}
 		}
+		context.show("Packaging " + output.getName() + "...");
 		try {
-			final String version = context.contains(Version.INSTANCE)
-					? context.get(Version.INSTANCE)
-					: DATE_FORMAT.format(new Date());
-			Utils.saveFile(context, manifest, "Implementation-Version: " + version + "\n");
-		} catch (IOException e) {
-			context.error("Can't create manifest: " + manifest);
-			return Either.fail(e);
-		}
-		if (services != null) {
-			final File servicePath = new File(metaInf, "services");
-			if (!servicePath.exists()) {
-				if (!servicePath.mkdirs()) {
-					return Either.fail("Error creating: " + servicePath.getAbsolutePath());
-				}
+			final String version;
+			if (context.contains(Version.INSTANCE)) {
+				version = context.get(Version.INSTANCE);
+			} else if (reproducible) {
+				version = contentVersion(classFiles, serviceFiles);
+			} else {
+				version = new SimpleDateFormat("yyyy-MM-dd-HH-mm").format(new Date());
 			}
-			for (Map.Entry<String, List<String>> kv : services.entrySet()) {
-				final File service = new File(servicePath, kv.getKey());
-				try {
-					StringBuilder sb = new StringBuilder();
-					for (String it : kv.getValue()) {
-						sb.append(it);
-						sb.append("\n");
+			final Manifest manifest = new Manifest();
+			manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+			manifest.getMainAttributes().put(Attributes.Name.IMPLEMENTATION_VERSION, version);
+			final long fixedTime = reproducible ? REPRODUCIBLE_TIME : -1;
+			final JarOutputStream jar = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(output)));
+			try {
+				putEntry(jar, "META-INF/", fixedTime);
+				putEntry(jar, JarFile.MANIFEST_NAME, fixedTime);
+				manifest.write(jar);
+				jar.closeEntry();
+				final Set<String> folders = new HashSet<String>();
+				folders.add("META-INF/");
+				for (final Map.Entry<String, byte[]> kv : serviceFiles.entrySet()) {
+					addFolders(jar, folders, kv.getKey(), fixedTime);
+					putEntry(jar, kv.getKey(), fixedTime);
+					jar.write(kv.getValue());
+					jar.closeEntry();
+				}
+				final byte[] buffer = new byte[8192];
+				for (final Map.Entry<String, File> kv : classFiles.entrySet()) {
+					final File f = kv.getValue();
+					addFolders(jar, folders, kv.getKey(), fixedTime);
+					putEntry(jar, kv.getKey(), reproducible ? fixedTime : f.lastModified());
+					final InputStream is = new FileInputStream(f);
+					try {
+						int read;
+						while ((read = is.read(buffer)) != -1) {
+							jar.write(buffer, 0, read);
+						}
+					} finally {
+						is.close();
 					}
-					Utils.saveFile(context, service, sb.toString());
-				} catch (IOException e) {
-					context.error("Can't create service: " + kv);
-					return Either.fail(e);
+					jar.closeEntry();
 				}
+			} finally {
+				jar.close();
 			}
+		} catch (IOException ex) {
+			if (output.exists() && !output.delete()) {
+				context.warning("Unable to remove incomplete archive: " + output.getAbsolutePath());
+			}
+			return Either.fail("Error creating archive: " + output.getAbsolutePath(), ex);
 		}
-		context.show("Running jar for " + output.getName() + "...");
-		final Either<Utils.CommandResult> execArchive = Utils.runCommand(context, jar, classOut, jarArguments);
-		if (!execArchive.isSuccess()) {
-			return Either.fail(execArchive.whyNot());
-		}
-		final Utils.CommandResult archiving = execArchive.get();
-		if (archiving.error.length() > 0) {
-			return Either.fail(archiving.error);
-		}
+		return Either.success(output);
+	}
 
-		return Either.success(execArchive.get());
+	private static void putEntry(final JarOutputStream jar, final String name, final long time) throws IOException {
+		final JarEntry entry = new JarEntry(name);
+		if (time != -1) {
+			entry.setTime(time);
+		}
+		jar.putNextEntry(entry);
 	}
 
-	private static List<String> makeJarArguments(
-			final Context context,
-			final File source,
-			final String type,
-			final File output,
-			final Map<String, List<String>> services) {
-		final List<String> jarArguments = new ArrayList<String>();
-		jarArguments.add("cfm");
-		jarArguments.add(output.getAbsolutePath());
-		jarArguments.add("META-INF" + File.separator + "MANIFEST.MF");
-
-		if (services != null && !services.isEmpty()) {
-			if (Utils.isWindows()) {
-				jarArguments.add("META-INF" + File.separator + "services" + File.separator + "*");
-			} else {
-				for (String key : services.keySet()) {
-					jarArguments.add("META-INF" + File.separator + "services" + File.separator + key);
-				}
-			}
+	//hash of entry names and contents in archive order
+	private static String contentVersion(
+			final Map<String, File> classFiles,
+			final Map<String, byte[]> serviceFiles) throws IOException {
+		final MessageDigest md;
+		try {
+			md = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			throw new IOException(ex.getMessage());
 		}
-		final int len = source.getAbsolutePath().length() + 1;
-		if (Utils.isWindows()) {
-			final List<File> classDirs = Utils.findNonEmptyDirs(source, "." + type);
-			for (final File f : classDirs) {
-				if (f.equals(source)) {
-					jarArguments.add("*." + type);
-				} else {
-					jarArguments.add(f.getAbsolutePath().substring(len) + File.separator + "*." + type);
-				}
-			}
-		} else {
-			final List<File> classFiles = Utils.findFiles(context, source, Collections.singletonList("." + type));
-			for (final File f : classFiles) {
-				jarArguments.add(f.getAbsolutePath().substring(len));
+		for (final Map.Entry<String, byte[]> kv : serviceFiles.entrySet()) {
+			md.update(FileIO.encode(kv.getKey()));
+			md.update((byte) 0);
+			md.update(kv.getValue());
+		}
+		for (final Map.Entry<String, File> kv : classFiles.entrySet()) {
+			md.update(FileIO.encode(kv.getKey()));
+			md.update((byte) 0);
+			md.update(FileIO.readBytes(kv.getValue()));
+		}
+		final StringBuilder sb = new StringBuilder();
+		final byte[] digest = md.digest();
+		for (int i = 0; i < 8; i++) {
+			sb.append(String.format("%02x", digest[i]));
+		}
+		return sb.toString();
+	}
+
+	//folder entries are written before their first file, as the jar tool does
+	private static void addFolders(
+			final JarOutputStream jar,
+			final Set<String> folders,
+			final String name,
+			final long time) throws IOException {
+		int index = name.indexOf('/');
+		while (index != -1) {
+			final String folder = name.substring(0, index + 1);
+			if (folders.add(folder)) {
+				putEntry(jar, folder, time);
+				jar.closeEntry();
 			}
+			index = name.indexOf('/', index + 1);
 		}
-		return jarArguments;
 	}
 
 	@Override
@@ -182,14 +210,7 @@ public enum JavaPath implements CompileParameter {
 				context.error("Trying to find javac in " + path);
 				return false;
 			}
-			final Either<String> jar = Utils.findCommand(context, path, "jar", "Usage: jar");
-			if (!jar.isSuccess()) {
-				context.error("java parameter is set, but Java archive tool not found/doesn't work. Please check specified java parameter.");
-				context.error("Trying to find jar in " + path);
-				return false;
-			}
 			context.cache(CACHE_FILE_PREFIX + "javac", javac.get());
-			context.cache(CACHE_FILE_PREFIX + "jar", jar.get());
 		}
 		return true;
 	}
@@ -200,19 +221,22 @@ public enum JavaPath implements CompileParameter {
 
 	@Override
 	public String getShortDescription() {
-		return "Specify custom path to Java compiler (javac) and Java Archive Tool (jar)";
+		return "Specify custom path to Java compiler (javac)";
 	}
 
 	@Override
 	public String getDetailedDescription() {
 		return "To compile Java libraries a Java compiler is required.\n" +
 				"If javac is not available in the path, custom path can be used to specify it.\n" +
-				"jar is required to package compiled .class files into .jar\n" +
+				"Compiled .class files are packaged into .jar by the client, so jar tool is not required.\n" +
 				"\n" +
 				"JDK_HOME and JAVA_HOME environment variables will be checked for Java tools.\n" +
+				"When not specified and the client is running on a JDK, Java sources are compiled in-process.\n" +
+				"In-process compilation produces classes for the Java running the client.\n" +
+				"If JAVA_HOME points to a different JDK, external javac is used instead.\n" +
 				"\n" +
 				"Example:\n" +
 				"\t/var/user/java-8\n" +
-				"where /var/user/java-8/javac and /var/user/java-8/jar exist";
+				"where /var/user/java-8/javac exists";
 	}
 }
@@ -69,7 +69,7 @@ public enum Migration implements CompileParameter, ParameterParser {
 					} else if (previous.isDirectory()) {
 						return Either.fail("Previous sql path found, but it's a directory: " + previous.getAbsolutePath() + ". Parameter: " + name);
 					}
-					final Either<String> content = Utils.readFile(previous);
+					final Either<String> content = FileIO.readFile(previous);
 					if (!content.isSuccess()) {
 						return Either.fail("Unable to read previous sql file from: " + previous.getAbsolutePath() + ". Parameter: " + name);
 					}
@@ -170,7 +170,7 @@ public enum Migration implements CompileParameter, ParameterParser {
 		final File sqlFile = new File(path.getAbsolutePath(), sqlFileName);
 		boolean isContentSame = false;
 		if (customFile != null && sqlFile.exists()) {
-			Either<String> content = Utils.readFile(sqlFile);
+			Either<String> content = FileIO.readFile(sqlFile);
 			isContentSame = content.isSuccess() && content.get().equals(script);
 			if (!content.isSuccess() || !isContentSame) {
 				if (context.contains(Force.INSTANCE)) {
@@ -188,7 +188,7 @@ public enum Migration implements CompileParameter, ParameterParser {
 		if (script.length() > 0) {
 			if (!isContentSame) {
 				try {
-					Utils.saveFile(context, sqlFile, script);
+					FileIO.saveFile(context, sqlFile, script);
 				} catch (IOException e) {
 					context.error("Error saving migration script to " + sqlFile.getAbsolutePath());
 					context.error(e);
@@ -55,6 +55,15 @@ public enum OracleConnection implements CompileParameter {
 		if (cache != null) {
 			return cache;
 		}
+		final long start = BuildReport.start();
+		try {
+			return introspectDatabase(context);
+		} finally {
+			BuildReport.span(context, "database introspection", start);
+		}
+	}
+
+	private static DatabaseInfo introspectDatabase(final Context context) throws ExitException {
 		final String previous = context.load("previous-sql:oracle");
 		if (previous != null) {
 			return extractDatabaseInfoFromMigration(context, previous);
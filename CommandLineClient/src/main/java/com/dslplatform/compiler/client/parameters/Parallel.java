@@ -0,0 +1,80 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+public enum Parallel implements CompileParameter, ParameterParser {
+	INSTANCE;
+
+	@Override
+	public String getAlias() {
+		return "parallel";
+	}
+
+	@Override
+	public String getUsage() {
+		return "threads";
+	}
+
+	public static int getThreads(final Context context, final int jobs) {
+		if (!context.contains(INSTANCE) || jobs < 2) {
+			return 1;
+		}
+		final String value = context.get(INSTANCE);
+		final int threads = value == null || value.length() == 0
+				? Runtime.getRuntime().availableProcessors()
+				: Integer.parseInt(value);
+		return Math.max(1, Math.min(threads, jobs));
+	}
+
+	@Override
+	public Either<Boolean> tryParse(final String name, final String value, final Context context) {
+		if ("parallel".equals(name)) {
+			context.put(INSTANCE, value);
+			return Either.success(true);
+		}
+		return Either.success(false);
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		if (context.contains(INSTANCE)) {
+			final String value = context.get(INSTANCE);
+			if (value != null && value.length() > 0) {
+				try {
+					if (Integer.parseInt(value) < 1) {
+						context.error("Number of parallel threads must be a positive number. Found: " + value);
+						return false;
+					}
+				} catch (NumberFormatException ignore) {
+					context.error("Invalid number of parallel threads: " + value);
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Compile independent targets in parallel";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "When multiple targets are specified they can be processed concurrently.\n" +
+				"Each target will be compiled by the DSL compiler, saved and built (javac, scalac, csc, ...) on a separate thread.\n" +
+				"Output of each target is grouped and shown when the target is done.\n" +
+				"When a target fails, remaining targets are cancelled.\n" +
+				"\n" +
+				"Use together with pool option to avoid waiting on a single DSL compiler.\n" +
+				"Default number of threads is the number of processors.\n" +
+				"\n" +
+				"Example:\n" +
+				"\tparallel\n" +
+				"\tparallel=2\n";
+	}
+}
@@ -41,6 +41,15 @@ public enum PostgresConnection implements CompileParameter {
 		if (cache != null) {
 			return cache;
 		}
+		final long start = BuildReport.start();
+		try {
+			return introspectDatabase(context);
+		} finally {
+			BuildReport.span(context, "database introspection", start);
+		}
+	}
+
+	private static DatabaseInfo introspectDatabase(final Context context) throws ExitException {
 		final String previous = context.load("previous-sql:postgres");
 		if (previous != null) {
 			return extractDatabaseInfoFromMigration(context, previous);
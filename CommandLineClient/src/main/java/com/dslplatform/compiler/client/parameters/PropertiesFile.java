@@ -32,7 +32,7 @@ public class PropertiesFile implements CompileParameter {
 				context.error("Can't find specified properties file: " + file.getAbsolutePath());
 				return false;
 			}
-			final Either<String> content = Utils.readFile(file);
+			final Either<String> content = FileIO.readFile(file);
 			if (!content.isSuccess()) {
 				context.error("Error reading specified properties file: " + file.getAbsolutePath());
 				return false;
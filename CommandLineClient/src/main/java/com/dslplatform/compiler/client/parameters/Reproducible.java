@@ -0,0 +1,40 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+public enum Reproducible implements CompileParameter {
+	INSTANCE;
+
+	@Override
+	public String getAlias() {
+		return "reproducible";
+	}
+
+	@Override
+	public String getUsage() {
+		return null;
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Package identical libraries from identical sources";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "By default compiled libraries contain modification times of class files,\n" +
+				"and when version is not specified, current date is used as library version.\n" +
+				"In reproducible mode all entries in the .jar use the same fixed time\n" +
+				"and default version is calculated from the packaged content.\n" +
+				"Same classes will then always be packaged into a byte-identical library.";
+	}
+}
@@ -0,0 +1,193 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.Context;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+final class RuleCache {
+
+	private static final int MAGIC = 0x44534c52;
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final Map<String, String> hashes = new HashMap<String, String>();
+
+	private final ByteBuffer buffer;
+	private final Map<String, Integer> index;
+
+	private RuleCache(final ByteBuffer buffer, final Map<String, Integer> index) {
+		this.buffer = buffer;
+		this.index = index;
+	}
+
+	int size() {
+		return index.size();
+	}
+
+	DslCompiler.RuleInfo find(final String name) {
+		final Integer position = index.get(name);
+		if (position == null) {
+			return null;
+		}
+		final ByteBuffer view = buffer.duplicate();
+		view.position(position);
+		final String grammar = readString(view);
+		final String description = readString(view);
+		final String[] children = new String[view.getInt()];
+		for (int i = 0; i < children.length; i++) {
+			children[i] = readString(view);
+		}
+		return new DslCompiler.RuleInfo(name, grammar, children, description);
+	}
+
+	private static String readString(final ByteBuffer view) {
+		final byte[] bytes = new byte[view.getInt()];
+		view.get(bytes);
+		return new String(bytes, UTF_8);
+	}
+
+	private static void skipString(final ByteBuffer view) {
+		final int length = view.getInt();
+		view.position(view.position() + length);
+	}
+
+	private static File location(final Context context, final File compiler) {
+		final String home = System.getProperty("user.home");
+		if (home == null || home.isEmpty() || !new File(home).exists()) {
+			return null;
+		}
+		final String hash = hash(context, compiler);
+		if (hash == null) {
+			return null;
+		}
+		return new File(new File(new File(home, ".DSL-Platform"), "rules"), hash + ".rules");
+	}
+
+	private static String hash(final Context context, final File compiler) {
+		final String key = compiler.getAbsolutePath() + ":" + compiler.lastModified() + ":" + compiler.length();
+		synchronized (hashes) {
+			final String known = hashes.get(key);
+			if (known != null) {
+				return known;
+			}
+		}
+		try {
+			final MessageDigest md = MessageDigest.getInstance("SHA-1");
+			final InputStream is = new DigestInputStream(new FileInputStream(compiler), md);
+			try {
+				final byte[] buffer = new byte[8192];
+				while (is.read(buffer) != -1) {
+				}
+			} finally {
+				is.close();
+			}
+			final StringBuilder sb = new StringBuilder();
+			for (final byte b : md.digest()) {
+				sb.append(String.format("%02x", b));
+			}
+			final String hash = sb.toString();
+			synchronized (hashes) {
+				hashes.put(key, hash);
+			}
+			return hash;
+		} catch (IOException ex) {
+			context.log("Unable to calculate compiler hash: " + ex.getMessage());
+			return null;
+		} catch (NoSuchAlgorithmException ex) {
+			context.log("Unable to calculate compiler hash: " + ex.getMessage());
+			return null;
+		}
+	}
+
+	static RuleCache load(final Context context, final File compiler) {
+		final File file = location(context, compiler);
+		if (file == null || !file.isFile()) {
+			return null;
+		}
+		try {
+			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+			final ByteBuffer buffer;
+			try {
+				buffer = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length());
+			} finally {
+				raf.close();
+			}
+			if (buffer.getInt() != MAGIC) {
+				context.log("Invalid rules cache: " + file.getAbsolutePath());
+				return null;
+			}
+			final int count = buffer.getInt();
+			final Map<String, Integer> index = new HashMap<String, Integer>(count * 2);
+			for (int i = 0; i < count; i++) {
+				final String name = readString(buffer);
+				index.put(name, buffer.position());
+				skipString(buffer);
+				skipString(buffer);
+				final int children = buffer.getInt();
+				for (int j = 0; j < children; j++) {
+					skipString(buffer);
+				}
+			}
+			context.log("Loaded " + count + " rules from cache: " + file.getAbsolutePath());
+			return new RuleCache(buffer, index);
+		} catch (IOException ex) {
+			context.log("Unable to load rules cache: " + ex.getMessage());
+			return null;
+		} catch (RuntimeException ex) {
+			context.log("Invalid rules cache: " + file.getAbsolutePath());
+			return null;
+		}
+	}
+
+	static void save(final Context context, final File compiler, final List<DslCompiler.RuleInfo> rules) {
+		final File file = location(context, compiler);
+		if (file == null || !file.getParentFile().exists() && !file.getParentFile().mkdirs()) {
+			return;
+		}
+		final List<DslCompiler.RuleInfo> named = new ArrayList<DslCompiler.RuleInfo>(rules.size());
+		for (final DslCompiler.RuleInfo ri : rules) {
+			if (ri.rule != null) named.add(ri);
+		}
+		final File temp = new File(file.getParentFile(), file.getName() + "." + UUID.randomUUID() + ".tmp");
+		try {
+			final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				//for each rule: name, grammar, description and children as length prefixed UTF-8
+				dos.writeInt(MAGIC);
+				dos.writeInt(named.size());
+				for (final DslCompiler.RuleInfo ri : named) {
+					writeString(dos, ri.rule);
+					writeString(dos, ri.grammar);
+					writeString(dos, ri.description);
+					dos.writeInt(ri.children.length);
+					for (final String child : ri.children) {
+						writeString(dos, child);
+					}
+				}
+			} finally {
+				dos.close();
+			}
+			if (!temp.renameTo(file)) {
+				//other IDE could have saved the same rules in the meantime
+				if (!file.exists()) {
+					context.log("Unable to save rules cache: " + file.getAbsolutePath());
+				}
+				temp.delete();
+			}
+		} catch (IOException ex) {
+			context.log("Unable to save rules cache: " + ex.getMessage());
+			temp.delete();
+		}
+	}
+
+	private static void writeString(final DataOutputStream dos, final String value) throws IOException {
+		final byte[] bytes = value.getBytes(UTF_8);
+		dos.writeInt(bytes.length);
+		dos.write(bytes);
+	}
+}
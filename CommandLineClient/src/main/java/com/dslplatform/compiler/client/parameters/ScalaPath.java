@@ -3,6 +3,9 @@ package com.dslplatform.compiler.client.parameters;
 import com.dslplatform.compiler.client.*;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 
 public enum ScalaPath implements CompileParameter {
 	INSTANCE;
@@ -34,6 +37,37 @@ public enum ScalaPath implements CompileParameter {
 		}
 	}
 
+	private static final String CACHE_SERVER = "scala_compile_server";
+
+	//fsc is distributed with scalac up to Scala 2.12. It compiles through a compiler daemon, which stays alive between builds
+	public static Either<String> findCompileServer(final Context context) {
+		final String cached = context.load(CACHE_SERVER);
+		if (cached != null) {
+			return cached.length() > 0
+					? Either.success(cached)
+					: Either.<String>fail("Scala compile server (fsc) not found");
+		}
+		final List<String> candidates = new ArrayList<String>();
+		final Either<String> scalac = findCompiler(context);
+		if (scalac.isSuccess() && scalac.get().endsWith("scalac.bat")) {
+			candidates.add(scalac.get().substring(0, scalac.get().length() - "scalac.bat".length()) + "fsc.bat");
+		} else if (scalac.isSuccess() && scalac.get().endsWith("scalac")) {
+			candidates.add(scalac.get().substring(0, scalac.get().length() - "scalac".length()) + "fsc");
+		}
+		if (Utils.isWindows()) {
+			candidates.add("fsc.bat");
+		}
+		candidates.add("fsc");
+		for (final String fsc : candidates) {
+			if (Utils.testCommand(context, fsc, "Scala compiler", Collections.singletonList("-version"))) {
+				context.cache(CACHE_SERVER, fsc);
+				return Either.success(fsc);
+			}
+		}
+		context.cache(CACHE_SERVER, "");
+		return Either.fail("Scala compile server (fsc) not found");
+	}
+
 	@Override
 	public boolean check(final Context context) {
 		if (context.contains(INSTANCE)) {
@@ -61,7 +95,6 @@ public enum ScalaPath implements CompileParameter {
 	public String getDetailedDescription() {
 		return "To compile Scala libraries Scala compiler is required.\n" +
 				"If scalac is not available in path, custom path can be used to specify it.\n" +
-				"jar from Java compiler is required to package compiled .class files into .jar" +
 				"\n" +
 				"SCALA_HOME environment variables will be checked for Scala tools.\n" +
 				"\n" +
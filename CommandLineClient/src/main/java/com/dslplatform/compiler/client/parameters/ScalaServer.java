@@ -0,0 +1,44 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+public enum ScalaServer implements CompileParameter {
+	INSTANCE;
+
+	@Override
+	public String getAlias() {
+		return "scala-server";
+	}
+
+	@Override
+	public String getUsage() {
+		return null;
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		if (context.contains(INSTANCE) && !ScalaPath.findCompileServer(context).isSuccess()) {
+			context.warning("Scala compile server (fsc) not found. scalac will be used instead.");
+		}
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Compile Scala libraries through a warm Scala compile server";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "By default every Scala library is compiled by starting a new scalac.\n" +
+				"With compile server, sources are sent to a background Scala compiler (fsc) over a local socket.\n" +
+				"Server is started on first use and stays alive between builds, from the command line or sbt,\n" +
+				"so the compiler is already warmed up and library classpath is already loaded.\n" +
+				"Server shuts down by itself after being idle for a while.\n" +
+				"fsc is looked up next to scalac. If it's not available, scalac is used.";
+	}
+}
@@ -0,0 +1,306 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+import java.io.*;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Date;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+final class ServerPool implements Closeable {
+
+	private static final String CACHE_NAME = "dsl-compiler-pool";
+	private static final int CONNECT_ATTEMPTS = 300;
+
+	private final Context context;
+	private final Launcher launcher;
+	private final Server[] servers;
+	private final BlockingQueue<Server> idle;
+	private final Random random = new Random();
+	private volatile boolean closed;
+
+	interface Launcher {
+		Either<Process> start(int port);
+	}
+
+	ServerPool(final Context context, final Launcher launcher, final int size) {
+		this.context = context;
+		this.launcher = launcher;
+		this.servers = new Server[size];
+		this.idle = new ArrayBlockingQueue<Server>(size);
+		for (int i = 0; i < size; i++) {
+			servers[i] = new Server(i + 1);
+			idle.add(servers[i]);
+		}
+	}
+
+	static synchronized ServerPool get(final Context context) throws ExitException {
+		ServerPool pool = context.load(CACHE_NAME);
+		if (pool != null) {
+			return pool;
+		}
+		if (!context.contains(CompilerPool.INSTANCE)) {
+			return null;
+		}
+		final File compiler = new File(context.get(DslCompiler.INSTANCE));
+		if (!compiler.exists()) {
+			return null;
+		}
+		final Either<Integer> trySize = CompilerPool.getSize(context);
+		if (!trySize.isSuccess()) {
+			context.error(trySize.explainError());
+			throw new ExitException();
+		}
+		final int size = trySize.get();
+		context.show("Starting pool of " + size + " DSL Platform compiler(s)...");
+		pool = new ServerPool(context, new Launcher() {
+			@Override
+			public Either<Process> start(final int port) {
+				return DslCompiler.startServerProcess(context, compiler, port);
+			}
+		}, size);
+		//start all processes upfront so they warm up in parallel
+		for (final Server s : pool.servers) {
+			if (!s.start()) {
+				context.warning("Unable to start DSL Platform compiler #" + s.id + ". It will be retried on first use.");
+			}
+		}
+		context.cache(CACHE_NAME, pool);
+		return pool;
+	}
+
+	//compilers are started and connected in the background, while remaining parameters are checked
+	static void warmUp(final Context context) throws ExitException {
+		final ServerPool pool = get(context);
+		if (pool == null) {
+			return;
+		}
+		for (int i = 0; i < pool.servers.length; i++) {
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					pool.connectIdle();
+				}
+			}, "dsl-compiler-warmup");
+			thread.setDaemon(true);
+			thread.start();
+		}
+	}
+
+	private void connectIdle() {
+		final Server server;
+		try {
+			server = idle.take();
+		} catch (InterruptedException ex) {
+			return;
+		}
+		try {
+			if (!closed && server.isAlive() && server.socket == null && !server.connect()) {
+				context.log("Unable to connect to DSL Platform compiler #" + server.id + " during warm up");
+			}
+		} finally {
+			idle.add(server);
+		}
+	}
+
+	//broken, unstartable or unreachable compiler is skipped, so request continues on another one.
+	//every compiler can be tried once, and one more attempt is left for a freshly started one.
+	//only socket failures are retried. Invalid response is reported once and compiler stays in the pool
+	Either<byte[]> run(final String command, final DslCompiler.SourceSink sink) throws ExitException {
+		Exception lastError = null;
+		for (int attempt = 0; attempt <= servers.length; attempt++) {
+			final Server server;
+			try {
+				server = checkout();
+			} catch (IOException ex) {
+				context.warning(ex.getMessage());
+				lastError = ex;
+				continue;
+			}
+			boolean healthy = false;
+			try {
+				final Either<byte[]> result = DslCompiler.sendCommand(context, server.socket, server.header, command, sink);
+				healthy = true;
+				return result;
+			} catch (SocketTimeoutException ex) {
+				//compiler which hangs would hang on the same request again, so it's stopped and not retried
+				context.warning("DSL Platform compiler #" + server.id + " failed: " + ex.getMessage());
+				return Either.fail(ex);
+			} catch (IOException ex) {
+				context.warning("DSL Platform compiler #" + server.id + " failed: " + ex.getMessage());
+				lastError = ex;
+			} finally {
+				release(server, healthy);
+			}
+		}
+		context.error(lastError);
+		throw new ExitException();
+	}
+
+	private Server checkout() throws ExitException, IOException {
+		final Server server;
+		try {
+			server = idle.take();
+		} catch (InterruptedException ex) {
+			throw new ExitException();
+		}
+		if (closed) {
+			idle.add(server);
+			context.error("DSL Platform compiler pool was closed");
+			throw new ExitException();
+		}
+		if (!server.isAlive()) {
+			if (server.failures > 0) {
+				context.log("Restarting DSL Platform compiler #" + server.id + " after " + server.failures + " failure(s)");
+			}
+			server.stop();
+			if (!server.start()) {
+				release(server, false);
+				throw new IOException("Unable to start DSL Platform compiler #" + server.id);
+			}
+		}
+		if (server.socket == null && !server.connect()) {
+			final int port = server.port;
+			release(server, false);
+			throw new IOException("Unable to connect to DSL Platform compiler #" + server.id + " at port: " + port);
+		}
+		server.requests++;
+		return server;
+	}
+
+	private void release(final Server server, final boolean healthy) {
+		if (healthy) {
+			server.failures = 0;
+		} else {
+			server.failures++;
+			server.stop();
+		}
+		if (closed) {
+			server.stop();
+		}
+		idle.add(server);
+	}
+
+	@Override
+	public void close() {
+		closed = true;
+		for (final Server s : servers) {
+			if (s.process != null) {
+				context.log("Stopping DSL Platform compiler #" + s.id + " after " + s.requests + " request(s)");
+			}
+			s.stop();
+		}
+	}
+
+	private final class Server {
+		final int id;
+		final ByteBuffer header = ByteBuffer.allocateDirect(8);
+
+		private Process process;
+		private int port;
+		private SocketChannel socket;
+		private long startedOn;
+		int requests;
+		int failures;
+
+		Server(final int id) {
+			this.id = id;
+		}
+
+		boolean isAlive() {
+			final Process proc = process;
+			if (proc == null) {
+				return false;
+			}
+			try {
+				proc.exitValue();
+				return false;
+			} catch (IllegalThreadStateException ignore) {
+				return socket == null || socket.isOpen();
+			}
+		}
+
+		boolean start() {
+			final int newPort = random.nextInt(40000) + 20000;
+			final Either<Process> tryProcess = launcher.start(newPort);
+			if (!tryProcess.isSuccess()) {
+				context.warning(tryProcess.explainError());
+				return false;
+			}
+			process = tryProcess.get();
+			port = newPort;
+			startedOn = new Date().getTime();
+			consumeOutput(process);
+			context.log("Started DSL Platform compiler #" + id + " at port: " + port);
+			return true;
+		}
+
+		boolean connect() {
+			for (int i = 0; i < CONNECT_ATTEMPTS && isAlive(); i++) {
+				final SocketChannel sck = open(port);
+				if (sck != null) {
+					socket = sck;
+					context.log("Connected to DSL Platform compiler #" + id + " after " + (new Date().getTime() - startedOn) + " ms");
+					return true;
+				}
+				try {
+					Thread.sleep(100);
+				} catch (InterruptedException ex) {
+					return false;
+				}
+			}
+			return false;
+		}
+
+		void stop() {
+			final SocketChannel sck = socket;
+			if (sck != null) {
+				try {
+					sck.close();
+				} catch (IOException ignore) {
+				}
+				socket = null;
+			}
+			final Process proc = process;
+			if (proc != null) {
+				try {
+					proc.destroy();
+				} catch (Exception ignore) {
+				}
+				process = null;
+			}
+		}
+	}
+
+	private static SocketChannel open(final int port) {
+		try {
+			return CompilerChannel.connect(port);
+		} catch (IOException ex) {
+			return null;
+		}
+	}
+
+	private void consumeOutput(final Process process) {
+		final Thread consume = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				final BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+				final char[] buffer = new char[8192];
+				int len;
+				try {
+					while ((len = reader.read(buffer)) != -1) {
+						context.log(buffer, len);
+					}
+					reader.close();
+				} catch (IOException ignore) {
+				}
+			}
+		});
+		consume.setDaemon(true);
+		consume.start();
+	}
+}
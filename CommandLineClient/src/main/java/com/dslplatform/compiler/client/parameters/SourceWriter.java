@@ -0,0 +1,367 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.Context;
+import com.dslplatform.compiler.client.ExitException;
+import com.dslplatform.compiler.client.FileIO;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+final class SourceWriter {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+	private static final int MAX_THREADS = 8;
+	private static final int FILES_PER_THREAD = 64;
+	private static final String MANIFEST_HEADER = "# DSL Platform generated files v1";
+
+	private static final class Entry {
+		final long hash;
+		final long size;
+		final long modified;
+
+		Entry(final long hash, final long size, final long modified) {
+			this.hash = hash;
+			this.size = size;
+			this.modified = modified;
+		}
+	}
+
+	static final class Result {
+		final List<File> written = new ArrayList<File>();
+		final List<File> unchanged = new ArrayList<File>();
+		final List<File> removed = new ArrayList<File>();
+		//when previous manifest was not found, leftover files must be found by walking the folder
+		boolean hasManifest;
+		private File manifest;
+		private Map<String, Entry> entries;
+
+		Set<File> used() {
+			final Set<File> used = new HashSet<File>(written.size() + unchanged.size());
+			used.addAll(written);
+			used.addAll(unchanged);
+			return used;
+		}
+
+		//staged manifest describes the staging folder, so it's saved only after it was published
+		void saveManifest(final Context context) {
+			if (manifest != null) {
+				writeManifest(context, manifest, entries);
+				manifest = null;
+			}
+		}
+	}
+
+	static File manifestFor(final File root) {
+		return new File(root.getParentFile(), "." + root.getName() + ".manifest");
+	}
+
+	static Result write(final Context context, final File root, final Map<File, String> files) throws ExitException {
+		return write(context, root, root, files);
+	}
+
+	//files are located in the target folder, which is either the live folder or its staging folder
+	static Result write(
+			final Context context,
+			final File live,
+			final File target,
+			final Map<File, String> files) throws ExitException {
+		final File manifest = manifestFor(live);
+		final Map<String, Entry> previous = readManifest(context, manifest);
+		final File source = live.equals(target) ? null : live;
+		final String rootPath = target.getAbsolutePath();
+		final Set<File> folders = new TreeSet<File>();
+		for (final File f : files.keySet()) {
+			folders.add(f.getParentFile());
+		}
+		//created upfront, so workers never race on mkdirs
+		for (final File folder : folders) {
+			setupFolder(context, folder, 2);
+		}
+		final List<Map.Entry<File, String>> entries = new ArrayList<Map.Entry<File, String>>(files.entrySet());
+		final String[] paths = new String[entries.size()];
+		for (int i = 0; i < paths.length; i++) {
+			paths[i] = relativePath(rootPath, entries.get(i).getKey());
+		}
+		final boolean[] changed = new boolean[entries.size()];
+		final String[] errors = new String[entries.size()];
+		final Entry[] current = new Entry[entries.size()];
+		final int threads = Math.min(MAX_THREADS, entries.size() / FILES_PER_THREAD);
+		if (threads < 2) {
+			for (int i = 0; i < entries.size(); i++) {
+				save(entries, paths, previous, source, i, changed, current, errors);
+			}
+		} else {
+			final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(final Runnable r) {
+					final Thread thread = new Thread(r, "dsl-writer");
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+			final AtomicInteger next = new AtomicInteger();
+			final List<Future<?>> workers = new ArrayList<Future<?>>(threads);
+			for (int i = 0; i < threads; i++) {
+				workers.add(executor.submit(new Runnable() {
+					@Override
+					public void run() {
+						int index;
+						while ((index = next.getAndIncrement()) < changed.length) {
+							save(entries, paths, previous, source, index, changed, current, errors);
+						}
+					}
+				}));
+			}
+			try {
+				for (final Future<?> w : workers) {
+					w.get();
+				}
+			} catch (InterruptedException ex) {
+				context.error(ex);
+				throw new ExitException();
+			} catch (ExecutionException ex) {
+				context.error("Error writing generated files");
+				context.error(ex);
+				throw new ExitException();
+			} finally {
+				executor.shutdown();
+			}
+		}
+		final Result result = new Result();
+		boolean failed = false;
+		for (int i = 0; i < entries.size(); i++) {
+			final File file = entries.get(i).getKey();
+			if (errors[i] != null) {
+				context.error(errors[i]);
+				failed = true;
+			} else if (changed[i]) {
+				context.log("Saving file: " + file.getAbsolutePath());
+				result.written.add(file);
+			} else {
+				context.log("File not changed: " + file.getAbsolutePath());
+				result.unchanged.add(file);
+			}
+		}
+		if (failed) {
+			throw new ExitException();
+		}
+		final Map<String, Entry> next = new LinkedHashMap<String, Entry>();
+		for (int i = 0; i < paths.length; i++) {
+			next.put(paths[i], current[i]);
+		}
+		if (previous != null) {
+			result.hasManifest = true;
+			for (final String path : previous.keySet()) {
+				if (next.containsKey(path)) continue;
+				final File file = new File(live, path);
+				if (!file.exists()) continue;
+				//staged files are not copied, so they are removed on publish
+				if (source != null) {
+					result.removed.add(file);
+					continue;
+				}
+				context.log("Removing leftover file: " + file.getAbsolutePath());
+				if (!file.delete()) {
+					context.error("Unable to delete file: " + file.getAbsolutePath());
+					throw new ExitException();
+				}
+				result.removed.add(file);
+				removeEmptyFolders(file.getParentFile(), live);
+			}
+		}
+		result.manifest = manifest;
+		result.entries = next;
+		if (source == null) {
+			result.saveManifest(context);
+		}
+		return result;
+	}
+
+	//context is not used since it can buffer messages for a target. Everything is logged after writing
+	private static void save(
+			final List<Map.Entry<File, String>> entries,
+			final String[] paths,
+			final Map<String, Entry> previous,
+			final File source,
+			final int index,
+			final boolean[] changed,
+			final Entry[] current,
+			final String[] errors) {
+		final Map.Entry<File, String> kv = entries.get(index);
+		final File file = kv.getKey();
+		try {
+			final byte[] content = FileIO.encode(kv.getValue());
+			final long hash = hash(content);
+			final Entry known = previous != null ? previous.get(paths[index]) : null;
+			final File existing = source != null ? new File(source, paths[index]) : file;
+			//file which matches its manifest entry is not read
+			if (known != null && known.hash == hash && known.size == content.length
+					&& existing.lastModified() == known.modified && existing.length() == known.size) {
+				if (source != null) {
+					copyFile(existing, file);
+					if (!file.setLastModified(known.modified)) {
+						current[index] = new Entry(hash, content.length, file.lastModified());
+						return;
+					}
+				}
+				changed[index] = false;
+				current[index] = known;
+				return;
+			}
+			changed[index] = save(file, content);
+			current[index] = new Entry(hash, content.length, file.lastModified());
+		} catch (IOException ex) {
+			errors[index] = ex.getMessage() != null ? ex.getMessage() : "Failed writing target file: " + file.getAbsolutePath();
+		}
+	}
+
+	//64 bit FNV-1a
+	static long hash(final byte[] content) {
+		long hash = 0xcbf29ce484222325L;
+		for (final byte b : content) {
+			hash ^= b & 0xff;
+			hash *= 0x100000001b3L;
+		}
+		return hash;
+	}
+
+	private static String relativePath(final String rootPath, final File file) {
+		final String path = file.getAbsolutePath();
+		if (path.length() > rootPath.length() && path.startsWith(rootPath)
+				&& path.charAt(rootPath.length()) == File.separatorChar) {
+			return path.substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+		}
+		return path.replace(File.separatorChar, '/');
+	}
+
+	private static void removeEmptyFolders(File folder, final File root) {
+		while (folder != null && !folder.equals(root)) {
+			final String[] children = folder.list();
+			if (children == null || children.length > 0 || !folder.delete()) {
+				return;
+			}
+			folder = folder.getParentFile();
+		}
+	}
+
+	private static Map<String, Entry> readManifest(final Context context, final File manifest) {
+		if (!manifest.isFile()) {
+			return null;
+		}
+		final Map<String, Entry> entries = new HashMap<String, Entry>();
+		try {
+			final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), UTF_8));
+			try {
+				if (!MANIFEST_HEADER.equals(reader.readLine())) {
+					context.log("Unknown manifest format: " + manifest.getAbsolutePath());
+					return null;
+				}
+				String line;
+				while ((line = reader.readLine()) != null) {
+					final String[] parts = line.split("\t", 4);
+					if (parts.length != 4) {
+						context.log("Invalid manifest: " + manifest.getAbsolutePath());
+						return null;
+					}
+					entries.put(parts[3], new Entry(
+							new BigInteger(parts[0], 16).longValue(),
+							Long.parseLong(parts[1]),
+							Long.parseLong(parts[2])));
+				}
+			} finally {
+				reader.close();
+			}
+		} catch (IOException ex) {
+			context.log("Unable to read manifest: " + ex.getMessage());
+			return null;
+		} catch (NumberFormatException ex) {
+			context.log("Invalid manifest: " + manifest.getAbsolutePath());
+			return null;
+		}
+		return entries;
+	}
+
+	private static void writeManifest(final Context context, final File manifest, final Map<String, Entry> entries) {
+		final StringBuilder sb = new StringBuilder(entries.size() * 64);
+		sb.append(MANIFEST_HEADER).append('\n');
+		for (final Map.Entry<String, Entry> kv : entries.entrySet()) {
+			final Entry e = kv.getValue();
+			sb.append(Long.toHexString(e.hash)).append('\t')
+					.append(e.size).append('\t')
+					.append(e.modified).append('\t')
+					.append(kv.getKey()).append('\n');
+		}
+		try {
+			FileIO.writeText(manifest, sb.toString());
+		} catch (IOException ex) {
+			context.warning("Unable to save manifest: " + manifest.getAbsolutePath());
+			manifest.delete();
+		}
+	}
+
+	private static boolean save(final File file, final byte[] content) throws IOException {
+		if (file.isDirectory() && !file.delete()) {
+			throw new IOException("Failed to remove folder: " + file.getAbsolutePath());
+		}
+		if (file.exists()) {
+			final File canonicalFile = file.getCanonicalFile();
+			if (!file.getName().equals(canonicalFile.getName())) {
+				//name differs only in case. Rename or recreate it with the new name
+				if (!canonicalFile.renameTo(file)) {
+					if (!file.delete()) {
+						throw new IOException("Failed to remove file: " + file.getAbsolutePath());
+					}
+					FileIO.writeBytes(file, content);
+					return true;
+				}
+			}
+			//different length means different content, so there is no need to read it
+			if (file.length() == content.length && Arrays.equals(FileIO.readBytes(file), content)) {
+				return false;
+			}
+		}
+		FileIO.writeBytes(file, content);
+		return true;
+	}
+
+	private static void copyFile(final File from, final File to) throws IOException {
+		final FileInputStream fis = new FileInputStream(from);
+		try {
+			final FileOutputStream fos = new FileOutputStream(to);
+			try {
+				final FileChannel input = fis.getChannel();
+				final FileChannel output = fos.getChannel();
+				final long size = input.size();
+				long position = 0;
+				while (position < size) {
+					position += input.transferTo(position, size - position, output);
+				}
+			} finally {
+				fos.close();
+			}
+		} finally {
+			fis.close();
+		}
+	}
+
+	private static void setupFolder(final Context context, final File path, int retry) throws ExitException {
+		if (path.exists()) return;
+		if (path.mkdirs()) return;
+		if (retry <= 0) {
+			context.error("Failed creating path for target file: " + path.getAbsolutePath());
+			throw new ExitException();
+		}
+		try {
+			context.warning("Failed creating path for target file: " + path.getAbsolutePath() + ". Retrying...");
+			Thread.sleep(100);
+		} catch (InterruptedException ex) {
+			throw new ExitException();
+		}
+		setupFolder(context, path, retry - 1);
+	}
+}
@@ -0,0 +1,104 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.*;
+
+import java.io.File;
+import java.io.IOException;
+
+public enum StagedOutput implements CompileParameter {
+	INSTANCE;
+
+	@Override
+	public String getAlias() {
+		return "staged";
+	}
+
+	@Override
+	public String getUsage() {
+		return null;
+	}
+
+	static File stagingFolder(final File root) {
+		return new File(root.getParentFile(), "." + root.getName() + ".staging");
+	}
+
+	private static File previousFolder(final File root) {
+		return new File(root.getParentFile(), "." + root.getName() + ".previous");
+	}
+
+	private static void delete(final Context context, final File folder) throws ExitException {
+		if (!folder.exists()) return;
+		try {
+			Utils.deletePath(folder);
+		} catch (IOException ex) {
+			context.error(ex);
+			throw new ExitException();
+		}
+		if (!folder.delete()) {
+			context.error("Unable to remove folder: " + folder.getAbsolutePath());
+			throw new ExitException();
+		}
+	}
+
+	//run which stopped during publish leaves the old version aside. Unfinished staging folder is just discarded
+	static File prepare(final Context context, final File root) throws ExitException {
+		final File previous = previousFolder(root);
+		if (!root.exists() && previous.exists()) {
+			context.warning("Restoring previous output after an interrupted run: " + root.getAbsolutePath());
+			if (!previous.renameTo(root)) {
+				context.error("Unable to restore previous output from: " + previous.getAbsolutePath());
+				throw new ExitException();
+			}
+		}
+		delete(context, previous);
+		final File staging = stagingFolder(root);
+		delete(context, staging);
+		if (!staging.mkdirs()) {
+			context.error("Unable to create staging folder: " + staging.getAbsolutePath());
+			throw new ExitException();
+		}
+		return staging;
+	}
+
+	//live folder is moved aside and staging takes its place. Folder is never partially updated,
+	//but between the two renames it's briefly missing. If the run stops there, prepare restores the old version
+	static void publish(final Context context, final File root, final File staging) throws ExitException {
+		final File previous = previousFolder(root);
+		if (root.exists() && !root.renameTo(previous)) {
+			context.error("Unable to move previous output to: " + previous.getAbsolutePath());
+			throw new ExitException();
+		}
+		if (!staging.renameTo(root)) {
+			context.error("Unable to publish output to: " + root.getAbsolutePath());
+			if (previous.exists() && !previous.renameTo(root)) {
+				context.error("Unable to restore previous output from: " + previous.getAbsolutePath());
+			}
+			throw new ExitException();
+		}
+		delete(context, previous);
+	}
+
+	@Override
+	public boolean check(final Context context) {
+		return true;
+	}
+
+	@Override
+	public void run(final Context context) {
+	}
+
+	@Override
+	public String getShortDescription() {
+		return "Build target sources in a staging folder and publish them all at once";
+	}
+
+	@Override
+	public String getDetailedDescription() {
+		return "By default generated sources are written directly into the target folder.\n" +
+				"When staged, sources are written into a sibling folder. Unchanged files are copied from the current output.\n" +
+				"Finished folder then replaces the current one with two renames, so other tools never see a partially updated tree,\n" +
+				"although the folder is missing for a moment while it's being replaced.\n" +
+				"Previous output moved aside by an interrupted run is restored on the next run.\n" +
+				"Staging folder left by an aborted run is discarded on the next run.";
+	}
+}
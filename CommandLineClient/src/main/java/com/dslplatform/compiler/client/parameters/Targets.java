@@ -5,6 +5,7 @@ import com.dslplatform.compiler.client.parameters.build.*;
 
 import java.io.*;
 import java.util.*;
+import java.util.concurrent.*;
 
 public enum Targets implements CompileParameter, ParameterParser {
 	INSTANCE;
@@ -253,49 +254,317 @@ public enum Targets implements CompileParameter, ParameterParser {
 		final List<File> dsls = DslPath.getDslPaths(context);
 		final List<String> settings = Settings.get(context);
 		final boolean sourceOnly = Settings.hasSourceOnly(context);
-		for (final Option t : targets) {
-			final String temp = getTargetSourcePath(context, sourceOnly, t);
-			final DatabaseInfo dbInfo = t.usesPreviousDsl ? Migration.getDatabaseInfo(context) : null;
-			final Map<String, String> files =
+		final Map<Option, Map<String, String>> sources = compileTogether(context, targets, dsls, settings);
+		final int threads = Parallel.getThreads(context, targets.size());
+		if (threads > 1) {
+			compileParallel(context, targets, sources, dsls, settings, sourceOnly, threads);
+		} else {
+			//all requests are sent upfront, so compiler can work on the next target while the current one is built
+			final List<Future<Either<Map<String, String>>>> requests = new ArrayList<Future<Either<Map<String, String>>>>();
+			for (final Option t : targets) {
+				if (sources.containsKey(t)) {
+					requests.add(null);
+					continue;
+				}
+				final DatabaseInfo dbInfo = t.usesPreviousDsl ? Migration.getDatabaseInfo(context) : null;
+				requests.add(
+						DslCompiler.compileAsync(
+								context,
+								t.value,
+								settings,
+								context.get(Namespace.INSTANCE),
+								context.get(Version.INSTANCE),
+								dbInfo,
+								dsls,
+								context.get("library:" + t.value),
+								context.get("configuration:" + t.value)));
+			}
+			for (int i = 0; i < targets.size(); i++) {
+				if (requests.get(i) == null) {
+					process(context, targets.get(i), sources.get(targets.get(i)), sourceOnly);
+					continue;
+				}
+				final Either<Map<String, String>> files;
+				try {
+					files = requests.get(i).get();
+				} catch (Exception ex) {
+					context.error(ex);
+					throw new ExitException();
+				}
+				if (!files.isSuccess()) {
+					if (!(files.whyNot() instanceof ExitException)) {
+						context.error(files.whyNot());
+					}
+					throw new ExitException();
+				}
+				process(context, targets.get(i), files.get(), sourceOnly);
+			}
+		}
+	}
+
+	//targets without specific library or configuration can be compiled with a single request
+	private static Map<Option, Map<String, String>> compileTogether(
+			final Context context,
+			final List<Option> targets,
+			final List<File> dsls,
+			final List<String> settings) throws ExitException {
+		final Map<Option, Map<String, String>> sources = new HashMap<Option, Map<String, String>>();
+		for (final boolean usesPreviousDsl : new boolean[]{false, true}) {
+			final List<String> group = new ArrayList<String>();
+			for (final Option t : targets) {
+				if (t.usesPreviousDsl == usesPreviousDsl
+						&& context.get("library:" + t.value) == null
+						&& context.get("configuration:" + t.value) == null) {
+					group.add(t.value);
+				}
+			}
+			if (group.size() < 2) {
+				continue;
+			}
+			final Map<String, Map<String, String>> files =
 					DslCompiler.compile(
 							context,
-							t.value,
+							group,
 							settings,
 							context.get(Namespace.INSTANCE),
 							context.get(Version.INSTANCE),
-							dbInfo,
-							dsls,
-							context.get("library:" + t.value),
-							context.get("configuration:" + t.value));
-			try {
-				boolean hasFileWithExtension = t.extension == null;
-				if (!hasFileWithExtension) {
-					for (final String name : files.keySet()) {
-						if (name.endsWith(t.extension)) {
-							hasFileWithExtension = true;
-							break;
+							usesPreviousDsl ? Migration.getDatabaseInfo(context) : null,
+							dsls);
+			if (files == null) {
+				break;
+			}
+			for (final Option t : targets) {
+				if (files.containsKey(t.value)) {
+					sources.put(t, files.get(t.value));
+				}
+			}
+		}
+		return sources;
+	}
+
+	private static void compile(
+			final Context context,
+			final Option t,
+			final List<File> dsls,
+			final List<String> settings,
+			final boolean sourceOnly,
+			final DatabaseInfo dbInfo) throws ExitException {
+		final Map<String, String> files =
+				DslCompiler.compile(
+						context,
+						t.value,
+						settings,
+						context.get(Namespace.INSTANCE),
+						context.get(Version.INSTANCE),
+						dbInfo,
+						dsls,
+						context.get("library:" + t.value),
+						context.get("configuration:" + t.value));
+		process(context, t, files, sourceOnly);
+	}
+
+	private static void process(
+			final Context context,
+			final Option t,
+			final Map<String, String> files,
+			final boolean sourceOnly) throws ExitException {
+		final String temp = getTargetSourcePath(context, sourceOnly, t);
+		boolean hasFileWithExtension = t.extension == null;
+		if (!hasFileWithExtension) {
+			for (final String name : files.keySet()) {
+				if (name.endsWith(t.extension)) {
+					hasFileWithExtension = true;
+					break;
+				}
+			}
+		}
+		final File root = new File(temp, t.name());
+		final boolean staged = context.contains(StagedOutput.INSTANCE);
+		final File folder = staged ? StagedOutput.prepare(context, root) : root;
+		final Map<File, String> output = new LinkedHashMap<File, String>();
+		for (final Map.Entry<String, String> kv : files.entrySet()) {
+			final String name = kv.getKey() + (hasFileWithExtension ? "" : t.extension);
+			output.put(targetFile(folder.getPath(), t.convertToPath, name), kv.getValue());
+		}
+		final long start = BuildReport.start();
+		final SourceWriter.Result result = SourceWriter.write(context, root, folder, output);
+		BuildReport.span(context, "write files", t.value, start);
+		if (staged) {
+			final long startPublish = BuildReport.start();
+			StagedOutput.publish(context, root, folder);
+			result.saveManifest(context);
+			BuildReport.span(context, "publish", t.value, startPublish);
+		} else if (!result.hasManifest) {
+			//files from previous runs are known only from the manifest
+			final long startRemove = BuildReport.start();
+			removeUnusedFiles(context, root, result.used(), result.removed);
+			BuildReport.span(context, "remove unused files", t.value, startRemove);
+		}
+		context.show(t.value + ": " + result.written.size() + " file(s) written, "
+				+ result.unchanged.size() + " unchanged, " + result.removed.size() + " removed");
+		context.notify("TARGET", t);
+		if (!sourceOnly && t.action != null) {
+			final long startBuild = BuildReport.start();
+			t.action.build(new File(temp, t.name()), context);
+			BuildReport.span(context, "build", t.value, startBuild);
+		}
+	}
+
+	private static void compileParallel(
+			final Context context,
+			final List<Option> targets,
+			final Map<Option, Map<String, String>> sources,
+			final List<File> dsls,
+			final List<String> settings,
+			final boolean sourceOnly,
+			final int threads) throws ExitException {
+		final List<TargetContext> contexts = new ArrayList<TargetContext>(targets.size());
+		for (final Option t : targets) {
+			final DatabaseInfo dbInfo = t.usesPreviousDsl ? Migration.getDatabaseInfo(context) : null;
+			contexts.add(new TargetContext(context, t, dbInfo));
+		}
+		context.show("Processing " + targets.size() + " targets on " + threads + " threads...");
+		final ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable r) {
+				final Thread thread = new Thread(r, "dsl-target");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		final CompletionService<TargetContext> completion = new ExecutorCompletionService<TargetContext>(executor);
+		for (final TargetContext tc : contexts) {
+			completion.submit(new Callable<TargetContext>() {
+				@Override
+				public TargetContext call() {
+					try {
+						final Map<String, String> files = sources.get(tc.target);
+						if (files != null) {
+							process(tc, tc.target, files, sourceOnly);
+						} else {
+							compile(tc, tc.target, dsls, settings, sourceOnly, tc.dbInfo);
 						}
+						tc.success = true;
+					} catch (ExitException ignore) {
+					} catch (RuntimeException ex) {
+						tc.error(ex);
 					}
+					return tc;
 				}
-				HashSet<File> usedFiles = new HashSet<File>();
-				for (final Map.Entry<String, String> kv : files.entrySet()) {
-					final String fullName = t.name() + "/" + kv.getKey() + (hasFileWithExtension ? "" : t.extension);
-					usedFiles.add(saveFile(context, temp, t.convertToPath, fullName, kv.getValue()));
+			});
+		}
+		try {
+			for (int i = 0; i < contexts.size(); i++) {
+				final TargetContext tc = completion.take().get();
+				tc.flush();
+				if (!tc.success) {
+					context.error("Compilation of " + tc.target.value + " failed. Cancelling remaining targets.");
+					throw new ExitException();
 				}
-				removeUnusedFiles(context, new File(temp, t.name()), usedFiles);
-			} catch (IOException e) {
-				context.error("Can't create temporary target file. Compilation results can't be saved locally.");
-				context.error(e);
-				throw new ExitException();
 			}
-			context.notify("TARGET", t);
-			if (!sourceOnly && t.action != null) {
-				t.action.build(new File(temp, t.name()), context);
+		} catch (InterruptedException ex) {
+			throw new ExitException();
+		} catch (ExecutionException ex) {
+			context.error(ex);
+			throw new ExitException();
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private static class TargetContext extends Context {
+		private final Context parent;
+		final Option target;
+		final DatabaseInfo dbInfo;
+		volatile boolean success;
+
+		private static final int SHOW = 0;
+		private static final int LOG = 1;
+		private static final int LOG_PART = 2;
+		private static final int WARNING = 3;
+		private static final int ERROR = 4;
+
+		private final List<Integer> types = new ArrayList<Integer>();
+		private final List<String[]> messages = new ArrayList<String[]>();
+
+		TargetContext(final Context parent, final Option target, final DatabaseInfo dbInfo) {
+			super(parent);
+			this.parent = parent;
+			this.target = target;
+			this.dbInfo = dbInfo;
+		}
+
+		private synchronized void add(final int type, final String... values) {
+			types.add(type);
+			messages.add(values);
+		}
+
+		@Override
+		public void show(final String... values) {
+			add(SHOW, values);
+		}
+
+		@Override
+		public void log(final String value) {
+			add(LOG, value);
+		}
+
+		@Override
+		public void log(final char[] value, final int len) {
+			add(LOG_PART, new String(value, 0, len));
+		}
+
+		@Override
+		public void warning(final String value) {
+			add(WARNING, value);
+		}
+
+		@Override
+		public void error(final String value) {
+			add(ERROR, value);
+		}
+
+		@Override
+		public <T> T notify(final String action, final T target) {
+			return parent.notify(action, target);
+		}
+
+		@Override
+		public boolean canInteract() {
+			return false;
+		}
+
+		synchronized void flush() {
+			for (int i = 0; i < types.size(); i++) {
+				final String[] values = messages.get(i);
+				switch (types.get(i)) {
+					case SHOW:
+						parent.show(values);
+						break;
+					case LOG:
+						parent.log(values[0]);
+						break;
+					case LOG_PART:
+						parent.log(values[0].toCharArray(), values[0].length());
+						break;
+					case WARNING:
+						parent.warning(values[0]);
+						break;
+					default:
+						parent.error(values[0]);
+						break;
+				}
 			}
+			types.clear();
+			messages.clear();
 		}
 	}
 
-	private static void removeUnusedFiles(final Context context, File folder, HashSet<File> usedFiles) throws ExitException {
+	private static void removeUnusedFiles(
+			final Context context,
+			final File folder,
+			final Set<File> usedFiles,
+			final List<File> removed) throws ExitException {
 		final File[] files = folder.listFiles();
 		if (files == null || files.length == 0) {
 			if (!folder.delete()) {
@@ -305,81 +574,26 @@ public enum Targets implements CompileParameter, ParameterParser {
 		}
 		for (File f : files) {
 			if (f.isDirectory()) {
-				removeUnusedFiles(context, f, usedFiles);
+				removeUnusedFiles(context, f, usedFiles, removed);
 			} else if (!usedFiles.contains(f)) {
 				context.log("Removing leftover file: " + f.getAbsolutePath());
 				if (!f.delete()) {
 					context.error("Unable to delete file: " + f.getAbsolutePath());
 					throw new ExitException();
 				}
+				removed.add(f);
 			}
 		}
 	}
 
-	private static void setupFolder(final Context context, final File path, int retry) throws ExitException {
-		if (path.exists()) return;
-		if (path.mkdirs()) return;
-		if (retry <= 0) {
-			context.error("Failed creating path for target file: " + path.getAbsolutePath());
-			throw new ExitException();
-		}
-		try {
-			context.warning("Failed creating path for target file: " + path.getAbsolutePath() + ". Retrying...");
-			Thread.sleep(100);
-		} catch (InterruptedException ex) {
-			throw new ExitException();
-		}
-		setupFolder(context, path, retry - 1);
-	}
-
-	private static File saveFile(
-			final Context context,
-			final String temp,
-			final boolean escapeName,
-			final String name,
-			final String content) throws ExitException, IOException {
+	private static File targetFile(final String temp, final boolean escapeName, final String name) {
 		final String cleanName = name.replace(':', '_').replace('<', '_').replace('>', '_');
 		final String nameOnly = cleanName.contains("\\")
 				? cleanName.substring(0, cleanName.lastIndexOf('\\'))
 				: cleanName.contains(".") ? cleanName.substring(0, cleanName.lastIndexOf('.')) : cleanName;
-		final File file = escapeName
+		return escapeName
 				? new File(temp, nameOnly.replace('.', '/').replace('\\', '/') + cleanName.substring(nameOnly.length()))
 				: new File(temp, cleanName);
-		final File parentPath = file.getParentFile();
-		setupFolder(context, parentPath, 2);
-		if (file.exists() && file.isDirectory() && !file.delete()) {
-			context.error("Failed to remove folder: " + file.getAbsolutePath());
-			throw new ExitException();
-		}
-		if (file.exists()) {
-			final File canonicalFile = file.getCanonicalFile();
-			if (!file.getName().equals(canonicalFile.getName())) {
-				if (!canonicalFile.renameTo(file)) {
-					if (!file.delete()) {
-						context.error("Failed to remove file: " + file.getAbsolutePath());
-						throw new ExitException();
-					}
-					if (!file.createNewFile()) {
-						context.error("Failed creating target file: " + file.getAbsolutePath());
-						throw new ExitException();
-					}
-				}
-			}
-			final Either<String> existingContent = Utils.readFile(file);
-			final boolean fileChanged = !existingContent.isSuccess() || !existingContent.get().equals(content);
-			if (fileChanged) {
-				Utils.saveFile(context, file, content);
-			} else {
-				context.log("File not changed: " + file.getAbsolutePath());
-			}
-		} else {
-			if (!file.createNewFile()) {
-				context.error("Failed creating target file: " + file.getAbsolutePath());
-				throw new ExitException();
-			}
-			Utils.saveFile(context, file, content);
-		}
-		return file;
 	}
 
 	@Override
@@ -0,0 +1,74 @@
+package com.dslplatform.compiler.client.parameters;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+
+abstract class XmlSourceReader {
+
+	private static final XMLInputFactory FACTORY;
+
+	static {
+		FACTORY = XMLInputFactory.newInstance();
+		FACTORY.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		FACTORY.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+	}
+
+	//compiler response is in the form of <root><item><Key>name</Key><Value>content</Value></item>...</root>
+	static int read(final InputStream stream, final DslCompiler.SourceSink sink) throws IOException {
+		final XMLStreamReader reader;
+		try {
+			synchronized (FACTORY) {
+				reader = FACTORY.createXMLStreamReader(stream, "UTF-8");
+			}
+		} catch (XMLStreamException ex) {
+			throw new IOException("Invalid xml found: " + ex.getMessage());
+		}
+		try {
+			int depth = 0;
+			int count = 0;
+			String key = null;
+			String value = null;
+			while (reader.hasNext()) {
+				switch (reader.next()) {
+					case XMLStreamConstants.START_ELEMENT:
+						if (depth == 2) {
+							final String name = reader.getLocalName();
+							if ("Key".equals(name)) {
+								key = reader.getElementText();
+								break;
+							} else if ("Value".equals(name)) {
+								value = reader.getElementText();
+								break;
+							}
+						}
+						depth++;
+						break;
+					case XMLStreamConstants.END_ELEMENT:
+						depth--;
+						if (depth == 1) {
+							if (key == null || value == null) {
+								throw new IOException("Invalid xml found. Expecting Key and Value at line: " + reader.getLocation().getLineNumber());
+							}
+							sink.add(key, value);
+							count++;
+							key = null;
+							value = null;
+						}
+						break;
+				}
+			}
+			return count;
+		} catch (XMLStreamException ex) {
+			throw new IOException("Invalid xml found: " + ex.getMessage());
+		} finally {
+			try {
+				reader.close();
+			} catch (XMLStreamException ignore) {
+			}
+		}
+	}
+}
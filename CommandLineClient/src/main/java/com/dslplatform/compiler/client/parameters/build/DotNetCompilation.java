@@ -2,15 +2,18 @@ package com.dslplatform.compiler.client.parameters.build;
 
 import com.dslplatform.compiler.client.Context;
 import com.dslplatform.compiler.client.Either;
+import com.dslplatform.compiler.client.FileIO;
 import com.dslplatform.compiler.client.Utils;
+import com.dslplatform.compiler.client.parameters.BuildReport;
 import com.dslplatform.compiler.client.parameters.DotNet;
 
 import java.io.File;
 import java.io.FilenameFilter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-import java.util.Map;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
 
 class DotNetCompilation {
 
@@ -54,7 +57,7 @@ class DotNetCompilation {
 		arguments.add(escapeChar + "warn:0");
 		arguments.add(escapeChar + "recurse:*.cs");
 		context.notify("CSC", arguments);
-		return runCompilation(source, context, compiler, arguments);
+		return runCompilation(source, context, compiler, arguments, "csc");
 	}
 
 	static Either<String> compileNewDotnet(
@@ -76,9 +79,19 @@ class DotNetCompilation {
 				return name.toLowerCase().endsWith(".dll");
 			}
 		});
+		if (dependencies != null) {
+			Arrays.sort(dependencies);
+		}
 		String projectName = output.getName().toLowerCase().endsWith(".dll")
 				? output.getName().substring(0, output.getName().length() - 4)
 				: output.getName();
+		//project lives next to the sources, so obj and bin folders survive source regeneration and staging.
+		//MSBuild then skips compilation when no source is newer than the previous output
+		final File projectFolder = new File(source.getParentFile(), "." + source.getName() + ".dotnet-" + projectName);
+		if (!projectFolder.exists() && !projectFolder.mkdirs()) {
+			return Either.fail("Unable to create project folder: " + projectFolder.getAbsolutePath());
+		}
+		final String sourcePath = source.getAbsolutePath() + File.separator;
 		final StringBuilder csproj = new StringBuilder();
 		csproj.append("<Project Sdk=\"Microsoft.NET.Sdk\">\n");
 		csproj.append("\t<PropertyGroup>\n");
@@ -86,41 +99,132 @@ class DotNetCompilation {
 		csproj.append("\t\t<GenerateAssemblyInfo>false</GenerateAssemblyInfo>\n");
 		csproj.append("\t\t<AssemblyName>").append(projectName).append("</AssemblyName>\n");
 		csproj.append("\t\t<AppendTargetFrameworkToOutputPath>false</AppendTargetFrameworkToOutputPath>\n");
+		csproj.append("\t\t<EnableDefaultCompileItems>false</EnableDefaultCompileItems>\n");
 		csproj.append("\t</PropertyGroup>\n");
 		csproj.append("\t<ItemGroup>\n");
-		for (String key : nugets.keySet()) {
-			csproj.append("\t\t<PackageReference Include=\"").append(key).append("\" Version=\"").append(nugets.get(key)).append("\" />\n");
+		csproj.append("\t\t<Compile Include=\"").append(sourcePath).append("**").append(File.separator).append("*.cs\" Exclude=\"")
+				.append(sourcePath).append("obj").append(File.separator).append("**;")
+				.append(sourcePath).append("bin").append(File.separator).append("**\" />\n");
+		for (Map.Entry<String, String> kv : new TreeMap<String, String>(nugets).entrySet()) {
+			csproj.append("\t\t<PackageReference Include=\"").append(kv.getKey()).append("\" Version=\"").append(kv.getValue()).append("\" />\n");
 		}
 		if (dependencies != null) {
 			for (String d : dependencies) {
 				String fileName = new File(d).getName();
 				String depName = fileName.toLowerCase().endsWith(".dll") ? fileName.substring(0, fileName.length() - 4) : fileName;
 				csproj.append("\t\t<Reference Include=\"").append(depName).append("\">\n");
-				csproj.append("\t\t\t<HintPath>").append(d).append("</HintPath>\n");
+				csproj.append("\t\t\t<HintPath>").append(new File(libraries, d).getAbsolutePath()).append("</HintPath>\n");
 				csproj.append("\t\t</Reference>\n");
 			}
 		}
 		csproj.append("\t</ItemGroup>\n");
 		csproj.append("</Project>");
-		final File projFile = new File(source, projectName + ".csproj");
-		try {
-			Utils.saveFile(context, projFile, csproj.toString());
-		} catch (IOException e) {
-			return Either.fail("Unable to create csproj file: " + e.getMessage(), e);
+		final File projFile = new File(projectFolder, projectName + ".csproj");
+		final String project = csproj.toString();
+		//unchanged project file keeps its timestamp, so MSBuild doesn't consider everything out of date
+		final Either<String> previousProject = projFile.exists() ? FileIO.readFile(projFile) : Either.<String>fail("missing");
+		if (!previousProject.isSuccess() || !project.equals(previousProject.get())) {
+			try {
+				FileIO.saveFile(context, projFile, project);
+			} catch (IOException e) {
+				return Either.fail("Unable to create csproj file: " + e.getMessage(), e);
+			}
+		}
+		//restore depends only on the project. It's skipped when the same project was already restored
+		final File assets = new File(new File(projectFolder, "obj"), "project.assets.json");
+		final File restoreStamp = new File(projectFolder, ".restored");
+		final String restoreKey = restoreKey(context, project);
+		if (restoreKey == null) {
+			return Either.fail("Unable to calculate restore key for " + projFile.getAbsolutePath());
+		}
+		final Either<String> restored = restoreStamp.exists() ? FileIO.readFile(restoreStamp) : Either.<String>fail("missing");
+		final boolean restoreSkipped = assets.exists() && restored.isSuccess() && restoreKey.equals(restored.get());
+		if (!restoreSkipped) {
+			final Either<String> restore = restore(source, context, compiler, projFile, restoreStamp, restoreKey);
+			if (!restore.isSuccess()) {
+				return restore;
+			}
+		} else {
+			context.log("Packages not changed. Skipping restore for " + projFile.getAbsolutePath());
 		}
 		final List<String> arguments = new ArrayList<String>();
 		arguments.add("build");
+		arguments.add("--no-restore");
 		arguments.add("--configuration");
 		arguments.add("Release");
 		arguments.add("--output");
 		arguments.add(output.getParentFile().getAbsolutePath());
+		//MSBuild nodes and the Roslyn compiler server stay alive for the next build
+		arguments.add("-nodeReuse:true");
+		arguments.add("-p:UseSharedCompilation=true");
 		arguments.add(projFile.getAbsolutePath());
 		context.notify("dotnet", arguments);
-		return runCompilation(source, context, compiler, arguments);
+		final Either<String> build = runCompilation(source, context, compiler, arguments, "dotnet build");
+		if (build.isSuccess() || !restoreSkipped || !isMissingRestore(build.explainError())) {
+			return build;
+		}
+		//packages could have been removed from the shared cache since the last restore
+		context.log("Build without restore failed. Retrying with restore for " + projFile.getAbsolutePath());
+		final Either<String> restore = restore(source, context, compiler, projFile, restoreStamp, restoreKey);
+		if (!restore.isSuccess()) {
+			return restore;
+		}
+		return runCompilation(source, context, compiler, arguments, "dotnet build");
+	}
+
+	static boolean isMissingRestore(final String error) {
+		return error != null
+				&& (error.contains("project.assets.json") || error.contains("NETSDK1004") || error.contains("NU1101"));
+	}
+
+	private static String restoreKey(final Context context, final String project) {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			context.warning(ex);
+			return null;
+		}
+		try {
+			digest.update(project.getBytes("UTF-8"));
+		} catch (UnsupportedEncodingException ignore) {
+		}
+		final StringBuilder sb = new StringBuilder(40);
+		for (final byte b : digest.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	private static Either<String> restore(
+			final File source,
+			final Context context,
+			final String compiler,
+			final File projFile,
+			final File restoreStamp,
+			final String restoreKey) {
+		restoreStamp.delete();
+		final List<String> restoreArguments = new ArrayList<String>();
+		restoreArguments.add("restore");
+		restoreArguments.add(projFile.getAbsolutePath());
+		context.notify("dotnet", restoreArguments);
+		final Either<String> restore = runCompilation(source, context, compiler, restoreArguments, "dotnet restore");
+		if (!restore.isSuccess()) {
+			return restore;
+		}
+		try {
+			FileIO.writeText(restoreStamp, restoreKey);
+		} catch (IOException ex) {
+			context.warning("Unable to save restore stamp: " + restoreStamp.getAbsolutePath());
+		}
+		return restore;
 	}
 
-	private static Either<String> runCompilation(File source, Context context, String compiler, List<String> arguments) {
+	private static Either<String> runCompilation(File source, Context context, String compiler, List<String> arguments, String phase) {
+		final long start = BuildReport.start();
 		final Either<Utils.CommandResult> execCompile = Utils.runCommand(context, compiler, source, arguments);
+		BuildReport.span(context, phase, source.getName(), start);
 		if (!execCompile.isSuccess()) {
 			return Either.fail(execCompile.whyNot());
 		}
@@ -0,0 +1,180 @@
+package com.dslplatform.compiler.client.parameters.build;
+
+import com.dslplatform.compiler.client.Context;
+import com.dslplatform.compiler.client.Either;
+import com.dslplatform.compiler.client.parameters.JavaPath;
+
+import javax.tools.*;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.*;
+
+final class InProcessJavac {
+
+	private static final String CACHE_NAME = "java_file_managers";
+
+	private static final class Pool implements Closeable {
+		final JavaCompiler compiler;
+		final Deque<StandardJavaFileManager> managers = new ArrayDeque<StandardJavaFileManager>();
+
+		Pool(final JavaCompiler compiler) {
+			this.compiler = compiler;
+		}
+
+		synchronized StandardJavaFileManager acquire() {
+			final StandardJavaFileManager manager = managers.poll();
+			return manager != null
+					? manager
+					: compiler.getStandardFileManager(null, Locale.getDefault(), Charset.forName("UTF-8"));
+		}
+
+		synchronized void release(final StandardJavaFileManager manager) {
+			managers.push(manager);
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+			for (final StandardJavaFileManager m : managers) {
+				m.close();
+			}
+			managers.clear();
+		}
+	}
+
+	//collects source of each class file written by the compiler. Nested classes point to the same source
+	private static final class Tracking extends ForwardingJavaFileManager<StandardJavaFileManager> {
+		private final Map<String, File> produced;
+
+		Tracking(final StandardJavaFileManager manager, final Map<String, File> produced) {
+			super(manager);
+			this.produced = produced;
+		}
+
+		@Override
+		public JavaFileObject getJavaFileForOutput(
+				final Location location,
+				final String className,
+				final JavaFileObject.Kind kind,
+				final FileObject sibling) throws IOException {
+			if (kind == JavaFileObject.Kind.CLASS && sibling != null && "file".equals(sibling.toUri().getScheme())) {
+				produced.put(className, new File(sibling.toUri()));
+			}
+			return super.getJavaFileForOutput(location, className, kind, sibling);
+		}
+	}
+
+	//in-process javac produces bytecode for the running Java.
+	//When JAVA_HOME points to some other JDK, javac from there is expected to build the libraries
+	private static boolean runsOnJavaHome() {
+		final String javaHome = System.getenv("JAVA_HOME");
+		if (javaHome == null || javaHome.length() == 0) {
+			return true;
+		}
+		try {
+			final File expected = new File(javaHome).getCanonicalFile();
+			final File running = new File(System.getProperty("java.home")).getCanonicalFile();
+			return expected.equals(running)
+					|| "jre".equals(running.getName()) && expected.equals(running.getParentFile());
+		} catch (IOException ignore) {
+			return false;
+		}
+	}
+
+	//explicit java parameter means javac from that location should be used
+	private static Pool pool(final Context context) {
+		if (context.contains(JavaPath.INSTANCE)) {
+			return null;
+		}
+		synchronized (InProcessJavac.class) {
+			//parallel targets don't share a manager, but reuse jars opened by the previous compilation
+			Pool pool = context.load(CACHE_NAME);
+			if (pool == null) {
+				if (!runsOnJavaHome()) {
+					context.log("JAVA_HOME points to a different Java than the running one. External javac will be used.");
+					return null;
+				}
+				final JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+				if (compiler == null) {
+					context.log("Java compiler is not available in the running Java. External javac will be used.");
+					return null;
+				}
+				pool = new Pool(compiler);
+				context.cache(CACHE_NAME, pool);
+			}
+			return pool;
+		}
+	}
+
+	static boolean isAvailable(final Context context) {
+		return pool(context) != null;
+	}
+
+	static Either<String> compile(
+			final Context context,
+			final List<String> options,
+			final List<File> sources,
+			final List<File> classPath,
+			final File classOut,
+			final Map<String, File> produced) {
+		final Pool pool = pool(context);
+		if (pool == null) {
+			return Either.fail("Java compiler is not available in the running Java");
+		}
+		final StandardJavaFileManager manager = pool.acquire();
+		final DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+		final StringWriter output = new StringWriter();
+		final boolean success;
+		try {
+			manager.setLocation(StandardLocation.CLASS_PATH, classPath);
+			manager.setLocation(StandardLocation.CLASS_OUTPUT, Collections.singletonList(classOut));
+			//all sources are passed explicitly. Other types must be resolved from the class path
+			manager.setLocation(StandardLocation.SOURCE_PATH, Collections.<File>emptyList());
+			final JavaCompiler.CompilationTask task = pool.compiler.getTask(
+					output,
+					produced != null ? new Tracking(manager, produced) : manager,
+					diagnostics,
+					options,
+					null,
+					manager.getJavaFileObjectsFromFiles(sources));
+			success = task.call();
+		} catch (IOException ex) {
+			return Either.fail(ex);
+		} catch (RuntimeException ex) {
+			//compiler crash. File manager could be left in a bad state, so it's not reused
+			try {
+				manager.close();
+			} catch (IOException ignore) {
+			}
+			return Either.fail(ex);
+		}
+		pool.release(manager);
+		final StringBuilder errors = new StringBuilder();
+		final StringBuilder messages = new StringBuilder(output.toString());
+		for (final Diagnostic<? extends JavaFileObject> d : diagnostics.getDiagnostics()) {
+			if (d.getKind() == Diagnostic.Kind.ERROR) {
+				format(errors, d);
+			} else {
+				format(messages, d);
+			}
+		}
+		if (!success) {
+			return Either.fail(errors.length() > 0 ? errors.toString() : "Java compilation failed\n" + messages);
+		}
+		return Either.success(messages.toString());
+	}
+
+	private static void format(final StringBuilder sb, final Diagnostic<? extends JavaFileObject> d) {
+		if (d.getSource() != null) {
+			sb.append(d.getSource().getName());
+			if (d.getLineNumber() != Diagnostic.NOPOS) {
+				sb.append(':').append(d.getLineNumber());
+			}
+			sb.append(": ");
+		}
+		sb.append(d.getKind().toString().toLowerCase(Locale.ENGLISH)).append(": ")
+				.append(d.getMessage(Locale.getDefault())).append('\n');
+	}
+}
@@ -0,0 +1,439 @@
+package com.dslplatform.compiler.client.parameters.build;
+
+import com.dslplatform.compiler.client.Context;
+import com.dslplatform.compiler.client.Either;
+import com.dslplatform.compiler.client.FileIO;
+import com.dslplatform.compiler.client.Utils;
+
+import java.io.*;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+final class IncrementalJava {
+
+	private static final String INDEX_HEADER = "# DSL Platform incremental Java v1";
+	private static final String INDEX_NAME = ".dsl-incremental";
+
+	private static final class Source {
+		final long size;
+		final long modified;
+		final List<String> classes;
+
+		Source(final long size, final long modified, final List<String> classes) {
+			this.size = size;
+			this.modified = modified;
+			this.classes = classes;
+		}
+	}
+
+	private static final class ClassInfo {
+		final boolean hasConstants;
+		final Set<String> references;
+
+		ClassInfo(final boolean hasConstants, final Set<String> references) {
+			this.hasConstants = hasConstants;
+			this.references = references;
+		}
+	}
+
+	private static final class Index {
+		final String key;
+		final Map<String, Source> sources = new HashMap<String, Source>();
+		final Map<String, ClassInfo> classes = new HashMap<String, ClassInfo>();
+
+		Index(final String key) {
+			this.key = key;
+		}
+	}
+
+	static Either<String> compile(
+			final Context context,
+			final List<String> options,
+			final File source,
+			final File classOut,
+			final File[] externalJars) {
+		final List<File> sources = FileIO.findFiles(context, source, Collections.singletonList(".java"));
+		if (sources.isEmpty()) {
+			return Either.fail("Unable to find Java generated sources in: " + source.getAbsolutePath());
+		}
+		final List<File> classPath = new ArrayList<File>(externalJars.length + 1);
+		classPath.add(classOut);
+		classPath.addAll(Arrays.asList(externalJars));
+		final String key = key(context, options, externalJars);
+		if (key == null) {
+			return Either.fail("Unable to calculate Java build key");
+		}
+		final String rootPath = source.getAbsolutePath();
+		final File indexFile = new File(classOut, INDEX_NAME);
+		final Index previous = readIndex(context, indexFile, key);
+		indexFile.delete();
+		final Map<String, File> current = new LinkedHashMap<String, File>();
+		for (final File f : sources) {
+			current.put(relativePath(rootPath, f), f);
+		}
+		final Set<String> recompile = previous != null ? affected(context, previous, current, classOut) : null;
+		final Index index = new Index(key);
+		final List<File> toCompile = new ArrayList<File>();
+		if (recompile == null) {
+			if (classOut.exists()) {
+				try {
+					Utils.deletePath(classOut);
+				} catch (IOException ex) {
+					return Either.fail("Can't remove folder with compiled files: " + classOut.getAbsolutePath(), ex);
+				}
+			}
+			toCompile.addAll(sources);
+		} else {
+			for (final Map.Entry<String, Source> kv : previous.sources.entrySet()) {
+				final boolean removed = !current.containsKey(kv.getKey());
+				if (!removed && !recompile.contains(kv.getKey())) {
+					index.sources.put(kv.getKey(), kv.getValue());
+					for (final String c : kv.getValue().classes) {
+						index.classes.put(c, previous.classes.get(c));
+					}
+					continue;
+				}
+				for (final String c : kv.getValue().classes) {
+					final File classFile = classFile(classOut, c);
+					if (classFile.exists() && !classFile.delete()) {
+						return Either.fail("Unable to remove class file: " + classFile.getAbsolutePath());
+					}
+				}
+			}
+			for (final Map.Entry<String, File> kv : current.entrySet()) {
+				if (!index.sources.containsKey(kv.getKey())) {
+					toCompile.add(kv.getValue());
+				}
+			}
+			context.log("Recompiling " + toCompile.size() + " of " + sources.size() + " Java sources");
+		}
+		if (!classOut.exists() && !classOut.mkdirs()) {
+			return Either.fail("Error creating folder for Java class files: " + classOut.getAbsolutePath());
+		}
+		if (toCompile.isEmpty()) {
+			writeIndex(context, indexFile, index);
+			return Either.success("");
+		}
+		final Map<String, File> produced = new HashMap<String, File>();
+		final Either<String> compilation = InProcessJavac.compile(context, options, toCompile, classPath, classOut, produced);
+		if (!compilation.isSuccess()) {
+			if (recompile != null) {
+				//partial compilation can fail on a dependency which was not detected. Result of a full build is authoritative
+				context.log("Incremental Java compilation failed. Compiling all sources");
+				try {
+					Utils.deletePath(classOut);
+				} catch (IOException ignore) {
+				}
+				return compile(context, options, source, classOut, externalJars);
+			}
+			return compilation;
+		}
+		final Map<String, List<String>> classesPerSource = new HashMap<String, List<String>>();
+		for (final Map.Entry<String, File> kv : produced.entrySet()) {
+			final String path = relativePath(rootPath, kv.getValue());
+			List<String> classes = classesPerSource.get(path);
+			if (classes == null) {
+				classes = new ArrayList<String>();
+				classesPerSource.put(path, classes);
+			}
+			classes.add(kv.getKey());
+		}
+		for (final File f : toCompile) {
+			final String path = relativePath(rootPath, f);
+			final List<String> classes = classesPerSource.get(path);
+			index.sources.put(path, new Source(f.length(), f.lastModified(),
+					classes != null ? classes : Collections.<String>emptyList()));
+		}
+		for (final String name : produced.keySet()) {
+			try {
+				index.classes.put(name, analyze(classFile(classOut, name)));
+			} catch (IOException ex) {
+				context.log("Unable to analyze class " + name + ": " + ex.getMessage());
+				//class without references would hide dependencies, so next build will be a full one
+				return compilation;
+			}
+		}
+		//references are kept only between compiled classes
+		for (final ClassInfo ci : index.classes.values()) {
+			ci.references.retainAll(index.classes.keySet());
+		}
+		writeIndex(context, indexFile, index);
+		return compilation;
+	}
+
+	//null when everything must be compiled
+	private static Set<String> affected(
+			final Context context,
+			final Index previous,
+			final Map<String, File> current,
+			final File classOut) {
+		final Set<String> recompile = new HashSet<String>();
+		final Set<String> changedClasses = new HashSet<String>();
+		for (final Map.Entry<String, Source> kv : previous.sources.entrySet()) {
+			final File file = current.get(kv.getKey());
+			final Source s = kv.getValue();
+			boolean changed = file == null || file.length() != s.size || file.lastModified() != s.modified;
+			for (final String c : s.classes) {
+				final ClassInfo ci = previous.classes.get(c);
+				if (ci == null) {
+					return null;
+				}
+				if (!changed && !classFile(classOut, c).isFile()) {
+					changed = true;
+				}
+			}
+			if (!changed) continue;
+			if (file != null) {
+				recompile.add(kv.getKey());
+			}
+			for (final String c : s.classes) {
+				//constants are inlined by javac without a reference to their class
+				if (previous.classes.get(c).hasConstants) {
+					context.log("Class with constants changed: " + c);
+					return null;
+				}
+				changedClasses.add(c);
+			}
+		}
+		final Map<String, String> sourceOfClass = new HashMap<String, String>();
+		for (final Map.Entry<String, Source> kv : previous.sources.entrySet()) {
+			for (final String c : kv.getValue().classes) {
+				sourceOfClass.put(c, kv.getKey());
+			}
+		}
+		final Map<String, List<String>> dependents = new HashMap<String, List<String>>();
+		for (final Map.Entry<String, ClassInfo> kv : previous.classes.entrySet()) {
+			for (final String r : kv.getValue().references) {
+				List<String> list = dependents.get(r);
+				if (list == null) {
+					list = new ArrayList<String>();
+					dependents.put(r, list);
+				}
+				list.add(kv.getKey());
+			}
+		}
+		final Deque<String> pending = new ArrayDeque<String>(changedClasses);
+		final Set<String> visited = new HashSet<String>(changedClasses);
+		while (!pending.isEmpty()) {
+			final List<String> users = dependents.get(pending.pop());
+			if (users == null) continue;
+			for (final String u : users) {
+				final String path = sourceOfClass.get(u);
+				if (path == null || !current.containsKey(path) || !recompile.add(path)) continue;
+				for (final String c : previous.sources.get(path).classes) {
+					if (visited.add(c)) {
+						pending.push(c);
+					}
+				}
+			}
+		}
+		return recompile;
+	}
+
+	private static File classFile(final File classOut, final String name) {
+		return new File(classOut, name.replace('.', File.separatorChar) + ".class");
+	}
+
+	private static String relativePath(final String rootPath, final File file) {
+		final String path = file.getAbsolutePath();
+		if (path.length() > rootPath.length() && path.startsWith(rootPath)) {
+			return path.substring(rootPath.length() + 1).replace(File.separatorChar, '/');
+		}
+		return path.replace(File.separatorChar, '/');
+	}
+
+	//different options or libraries invalidate previous output
+	private static String key(final Context context, final List<String> options, final File[] externalJars) {
+		final List<String> parts = new ArrayList<String>(options);
+		//classes from a different compiler can't be mixed with new ones, so JDK change forces a full build
+		parts.add(System.getProperty("java.version"));
+		parts.add(System.getProperty("java.vendor"));
+		final List<String> jars = new ArrayList<String>();
+		for (final File j : externalJars) {
+			jars.add(j.getAbsolutePath() + ":" + j.length() + ":" + j.lastModified());
+		}
+		Collections.sort(jars);
+		parts.addAll(jars);
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException ex) {
+			context.warning(ex);
+			return null;
+		}
+		for (final String p : parts) {
+			try {
+				digest.update(p.getBytes("UTF-8"));
+			} catch (UnsupportedEncodingException ignore) {
+			}
+			digest.update((byte) 0);
+		}
+		final StringBuilder sb = new StringBuilder(40);
+		for (final byte b : digest.digest()) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16));
+			sb.append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+
+	//constant pool contains all classes referenced by the class, either directly or through descriptors and signatures
+	static ClassInfo analyze(final File classFile) throws IOException {
+		final DataInputStream dis = new DataInputStream(new ByteArrayInputStream(FileIO.readBytes(classFile)));
+		if (dis.readInt() != 0xCAFEBABE) {
+			throw new IOException("Invalid class file: " + classFile.getAbsolutePath());
+		}
+		dis.readUnsignedShort();
+		dis.readUnsignedShort();
+		final int count = dis.readUnsignedShort();
+		final Set<String> references = new HashSet<String>();
+		boolean hasConstants = false;
+		for (int i = 1; i < count; i++) {
+			final int tag = dis.readUnsignedByte();
+			switch (tag) {
+				case 1:
+					final String value = dis.readUTF();
+					if ("ConstantValue".equals(value)) {
+						hasConstants = true;
+					}
+					collectNames(value, references);
+					break;
+				case 3:
+				case 4:
+				case 9:
+				case 10:
+				case 11:
+				case 12:
+				case 17:
+				case 18:
+					dis.skipBytes(4);
+					break;
+				case 5:
+				case 6:
+					dis.skipBytes(8);
+					i++;
+					break;
+				case 7:
+				case 8:
+				case 16:
+				case 19:
+				case 20:
+					dis.skipBytes(2);
+					break;
+				case 15:
+					dis.skipBytes(3);
+					break;
+				default:
+					throw new IOException("Unknown constant pool tag " + tag + " in: " + classFile.getAbsolutePath());
+			}
+		}
+		return new ClassInfo(hasConstants, references);
+	}
+
+	//class entries are plain internal names, descriptors and signatures contain them as Lname; or Lname<
+	private static void collectNames(final String value, final Set<String> references) {
+		if (value.indexOf('/') == -1 && value.indexOf(';') == -1) {
+			if (isName(value, 0, value.length())) {
+				references.add(value);
+			}
+			return;
+		}
+		if (isName(value, 0, value.length())) {
+			references.add(value.replace('/', '.'));
+			return;
+		}
+		int start = value.indexOf('L');
+		while (start != -1) {
+			int end = start + 1;
+			while (end < value.length() && value.charAt(end) != ';' && value.charAt(end) != '<') {
+				end++;
+			}
+			if (end < value.length() && isName(value, start + 1, end)) {
+				references.add(value.substring(start + 1, end).replace('/', '.'));
+			}
+			start = value.indexOf('L', start + 1);
+		}
+	}
+
+	private static boolean isName(final String value, final int start, final int end) {
+		if (start == end) return false;
+		for (int i = start; i < end; i++) {
+			final char c = value.charAt(i);
+			if (c != '/' && c != '$' && c != '_' && !Character.isLetterOrDigit(c)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static Index readIndex(final Context context, final File file, final String key) {
+		if (!file.isFile()) {
+			return null;
+		}
+		try {
+			final BufferedReader reader = new BufferedReader(new StringReader(FileIO.readText(file)));
+			if (!INDEX_HEADER.equals(reader.readLine()) || !key.equals(reader.readLine())) {
+				context.log("Java compilation options changed. Compiling all sources");
+				return null;
+			}
+			final Index index = new Index(key);
+			String line;
+			while ((line = reader.readLine()) != null) {
+				final String[] parts = line.split("\t", -1);
+				if ("S".equals(parts[0]) && parts.length == 5) {
+					final List<String> classes = parts[4].length() == 0
+							? Collections.<String>emptyList()
+							: Arrays.asList(parts[4].split(" "));
+					index.sources.put(parts[3], new Source(Long.parseLong(parts[1]), Long.parseLong(parts[2]), classes));
+				} else if ("C".equals(parts[0]) && parts.length == 4) {
+					final Set<String> references = new HashSet<String>();
+					if (parts[3].length() > 0) {
+						references.addAll(Arrays.asList(parts[3].split(" ")));
+					}
+					index.classes.put(parts[1], new ClassInfo("1".equals(parts[2]), references));
+				} else {
+					context.log("Invalid Java compilation index: " + file.getAbsolutePath());
+					return null;
+				}
+			}
+			return index;
+		} catch (IOException ex) {
+			context.log("Unable to read Java compilation index: " + ex.getMessage());
+			return null;
+		} catch (NumberFormatException ex) {
+			context.log("Invalid Java compilation index: " + file.getAbsolutePath());
+			return null;
+		}
+	}
+
+	private static void writeIndex(final Context context, final File file, final Index index) {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(INDEX_HEADER).append('\n').append(index.key).append('\n');
+		for (final Map.Entry<String, Source> kv : index.sources.entrySet()) {
+			final Source s = kv.getValue();
+			sb.append("S\t").append(s.size).append('\t').append(s.modified).append('\t').append(kv.getKey()).append('\t');
+			join(sb, s.classes);
+			sb.append('\n');
+		}
+		for (final Map.Entry<String, ClassInfo> kv : index.classes.entrySet()) {
+			sb.append("C\t").append(kv.getKey()).append('\t').append(kv.getValue().hasConstants ? '1' : '0').append('\t');
+			join(sb, kv.getValue().references);
+			sb.append('\n');
+		}
+		try {
+			FileIO.writeText(file, sb.toString());
+		} catch (IOException ex) {
+			context.warning("Unable to save Java compilation index: " + file.getAbsolutePath());
+			file.delete();
+		}
+	}
+
+	private static void join(final StringBuilder sb, final Collection<String> values) {
+		boolean first = true;
+		for (final String v : values) {
+			if (!first) sb.append(' ');
+			first = false;
+			sb.append(v);
+		}
+	}
+}
@@ -3,10 +3,12 @@ package com.dslplatform.compiler.client.parameters.build;
 import com.dslplatform.compiler.client.Context;
 import com.dslplatform.compiler.client.Either;
 import com.dslplatform.compiler.client.Utils;
+import com.dslplatform.compiler.client.parameters.BuildReport;
 import com.dslplatform.compiler.client.parameters.JavaPath;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.*;
 
 class JavaCompilation {
@@ -31,18 +33,8 @@ class JavaCompilation {
 				return Either.fail("Unable to create output folder for: " + output.getAbsolutePath());
 			}
 		}
-		final Either<String> tryCompiler = JavaPath.findCompiler(context);
-		if (!tryCompiler.isSuccess()) {
-			return Either.fail(tryCompiler.whyNot());
-		}
-		final String javac = tryCompiler.get();
-		final File classOut = new File(source, "compile-" + name);
-		if (classOut.exists() && !classOut.delete()) {
-			return Either.fail("Can't remove folder with compiled files: " + classOut.getAbsolutePath());
-		}
-		if (!classOut.mkdirs()) {
-			return Either.fail("Error creating temporary folder for Java class files: " + classOut.getAbsolutePath());
-		}
+		//class folder is kept next to the sources, so it can be reused by the next build
+		final File classOut = new File(source.getParentFile(), "." + source.getName() + ".compile-" + name);
 		final File[] externalJars = libraries.listFiles(new FilenameFilter() {
 			@Override
 			public boolean accept(final File dir, final String name) {
@@ -53,12 +45,64 @@ class JavaCompilation {
 			return Either.fail("Unable to find dependencies in: " + libraries.getAbsolutePath());
 		}
 
+		final Either<String> compilation = InProcessJavac.isAvailable(context)
+				? compileInProcess(name, source, classOut, externalJars, output, context)
+				: compileExternal(name, source, classOut, externalJars, output, context);
+		if (!compilation.isSuccess()) {
+			return compilation;
+		}
+
+		final long startArchive = BuildReport.start();
+		final Either<File> tryArchive = JavaPath.makeArchive(context, classOut, output, services);
+		BuildReport.span(context, "jar", name, startArchive);
+		if (!tryArchive.isSuccess()) {
+			return Either.fail(tryArchive.whyNot());
+		}
+		return compilation;
+	}
+
+	private static Either<String> compileInProcess(
+			final String name,
+			final File source,
+			final File classOut,
+			final File[] externalJars,
+			final File output,
+			final Context context) {
+		final List<String> options = Arrays.asList("-encoding", "UTF-8", "-Xlint:none");
+		context.notify("JAVAC", options);
+		context.show("Running javac for " + output.getName() + " ...");
+		final long start = BuildReport.start();
+		final Either<String> compilation = IncrementalJava.compile(context, options, source, classOut, externalJars);
+		BuildReport.span(context, "javac", name, start);
+		return compilation;
+	}
+
+	private static Either<String> compileExternal(
+			final String name,
+			final File source,
+			final File classOut,
+			final File[] externalJars,
+			final File output,
+			final Context context) {
+		final Either<String> tryCompiler = JavaPath.findCompiler(context);
+		if (!tryCompiler.isSuccess()) {
+			return Either.fail(tryCompiler.whyNot());
+		}
+		final String javac = tryCompiler.get();
+		try {
+			Utils.deletePath(classOut);
+		} catch (IOException ex) {
+			return Either.fail("Can't remove folder with compiled files: " + classOut.getAbsolutePath(), ex);
+		}
+		if (!classOut.exists() && !classOut.mkdirs()) {
+			return Either.fail("Error creating temporary folder for Java class files: " + classOut.getAbsolutePath());
+		}
 		final List<String> javacArguments = new ArrayList<String>();
 		javacArguments.add("-encoding");
 		javacArguments.add("UTF-8");
 		javacArguments.add("-Xlint:none"); // notices still get emitted to the stderr
 		javacArguments.add("-d");
-		javacArguments.add("compile-" + name);
+		javacArguments.add(classOut.getAbsolutePath());
 		javacArguments.add("-cp");
 		final StringBuilder classPath = new StringBuilder(".");
 		for (final File j : externalJars) {
@@ -71,7 +115,9 @@ class JavaCompilation {
 			return Either.fail("Unable to find Java generated sources in: " + source.getAbsolutePath());
 		javacArguments.addAll(sources);
 		context.show("Running javac for " + output.getName() + " ...");
+		final long start = BuildReport.start();
 		final Either<Utils.CommandResult> execCompile = Utils.runCommand(context, javac, source, javacArguments);
+		BuildReport.span(context, "javac", name, start);
 		if (!execCompile.isSuccess()) {
 			return Either.fail(execCompile.whyNot());
 		}
@@ -95,11 +141,6 @@ class JavaCompilation {
 			}
 			return Either.fail(compilation.output);
 		}
-
-		final Either<Utils.CommandResult> tryArchive = JavaPath.makeArchive(context, classOut, output, services);
-		if (!tryArchive.isSuccess()) {
-			return Either.fail(tryArchive.whyNot());
-		}
 		return Either.success(compilation.output);
 	}
 }
@@ -4,6 +4,7 @@ import com.dslplatform.compiler.client.*;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.HashSet;
 
 public class PrepareSources implements BuildAction {
@@ -54,21 +55,25 @@ public class PrepareSources implements BuildAction {
 				}
 				copyFolder(sf, tf, context);
 			} else {
-				final Either<String> content = Utils.readFile(sf);
-				if (!content.isSuccess()) {
+				final byte[] content;
+				try {
+					content = FileIO.readBytes(sf);
+				} catch (IOException ex) {
 					context.error("Error reading source " + targetName + " file: " + sf.getAbsolutePath());
 					throw new ExitException();
 				}
-				if (tf.exists()) {
-					final Either<String> oldContent = Utils.readFile(tf);
-					if (!oldContent.isSuccess()) {
+				//target with a different length is not read
+				if (tf.isFile() && tf.length() == content.length) {
+					try {
+						if (Arrays.equals(FileIO.readBytes(tf), content)) continue;
+					} catch (IOException ex) {
 						context.error("Error reading target " + targetName + " file: " + tf.getAbsolutePath());
 						throw new ExitException();
 					}
-					if (oldContent.get().equals(content.get())) continue;
 				}
 				try {
-					Utils.saveFile(context, tf, content.get());
+					context.log("Saving file: " + tf.getAbsolutePath());
+					FileIO.writeBytes(tf, content);
 				} catch (IOException ex) {
 					context.error("Error writing target " + targetName + " file: " + tf.getAbsolutePath());
 					throw new ExitException();
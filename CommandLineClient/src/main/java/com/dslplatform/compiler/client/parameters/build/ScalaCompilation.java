@@ -3,11 +3,14 @@ package com.dslplatform.compiler.client.parameters.build;
 import com.dslplatform.compiler.client.Context;
 import com.dslplatform.compiler.client.Either;
 import com.dslplatform.compiler.client.Utils;
+import com.dslplatform.compiler.client.parameters.BuildReport;
 import com.dslplatform.compiler.client.parameters.JavaPath;
 import com.dslplatform.compiler.client.parameters.ScalaPath;
+import com.dslplatform.compiler.client.parameters.ScalaServer;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
@@ -34,16 +37,22 @@ class ScalaCompilation {
 				return Either.fail("Unable to create output folder for: " + output.getAbsolutePath());
 			}
 		}
-		final Either<String> tryCompiler = ScalaPath.findCompiler(context);
+		final Either<String> tryServer = context.contains(ScalaServer.INSTANCE)
+				? ScalaPath.findCompileServer(context)
+				: Either.<String>fail("Scala compile server not used");
+		final Either<String> tryCompiler = tryServer.isSuccess() ? tryServer : ScalaPath.findCompiler(context);
 		if (!tryCompiler.isSuccess()) {
 			return Either.fail(tryCompiler.whyNot());
 		}
 		final String scalac = tryCompiler.get();
 		final File classOut = new File(source, "compile-" + name);
-		if (classOut.exists() && !classOut.delete()) {
-			return Either.fail("Can't remove folder with compiled files: " + classOut.getAbsolutePath());
+		//class files from the previous build are not tracked by the generated files manifest
+		try {
+			Utils.deletePath(classOut);
+		} catch (IOException ex) {
+			return Either.fail("Can't remove folder with compiled files: " + classOut.getAbsolutePath(), ex);
 		}
-		if (!classOut.mkdirs()) {
+		if (!classOut.exists() && !classOut.mkdirs()) {
 			return Either.fail("Error creating temporary folder for Scala class files: " + classOut.getAbsolutePath());
 		}
 		final File[] externalJars = libraries.listFiles(new FilenameFilter() {
@@ -56,27 +65,37 @@ class ScalaCompilation {
 			return Either.fail("Unable to find dependencies in: " + libraries.getAbsolutePath());
 		}
 
+		//compile server runs in its own folder, so all paths are absolute.
+		//same classpath allows it to reuse symbols loaded by the previous build
+		final String prefix = tryServer.isSuccess() ? source.getAbsolutePath() + File.separator : "";
 		final List<String> scalacArguments = new ArrayList<String>();
 		scalacArguments.add("-encoding");
 		scalacArguments.add("UTF8");
-		scalacArguments.add("-optimise");
+		//-optimise is deprecated in newer Scala and only slows down the warm compile server
+		if (!tryServer.isSuccess()) {
+			scalacArguments.add("-optimise");
+		}
 		scalacArguments.add("-nowarn");
 		scalacArguments.add("-d");
-		scalacArguments.add("compile-" + name);
+		scalacArguments.add(prefix + "compile-" + name);
 		scalacArguments.add("-classpath");
-		final StringBuilder classPath = new StringBuilder(".");
+		final StringBuilder classPath = new StringBuilder(tryServer.isSuccess() ? source.getAbsolutePath() : ".");
 		for (final File j : externalJars) {
 			classPath.append(File.pathSeparatorChar).append(j.getAbsolutePath());
 		}
 		scalacArguments.add(classPath.toString());
-		context.notify("SCALAC", scalacArguments);
+		context.notify(tryServer.isSuccess() ? "FSC" : "SCALAC", scalacArguments);
 		List<String> sources = Utils.listSources(source, context, ".scala");
 		if (sources.isEmpty()) {
 			return Either.fail("Unable to find Scala generated sources in: " + source.getAbsolutePath());
 		}
-		scalacArguments.addAll(sources);
-		context.show("Running scalac for " + output.getName());
+		for (final String s : sources) {
+			scalacArguments.add(prefix + s);
+		}
+		context.show((tryServer.isSuccess() ? "Running fsc for " : "Running scalac for ") + output.getName());
+		final long start = BuildReport.start();
 		final Either<Utils.CommandResult> execCompile = Utils.runCommand(context, scalac, source, scalacArguments);
+		BuildReport.span(context, "scalac", name, start);
 		if (!execCompile.isSuccess()) {
 			return Either.fail(execCompile.whyNot());
 		}
@@ -97,7 +116,9 @@ class ScalaCompilation {
 			return Either.fail(compilation.output);
 		}
 		final String compilationOutput = compilation.output;
-		final Either<Utils.CommandResult> tryArchive = JavaPath.makeArchive(context, classOut, output, services);
+		final long startArchive = BuildReport.start();
+		final Either<File> tryArchive = JavaPath.makeArchive(context, classOut, output, services);
+		BuildReport.span(context, "jar", name, startArchive);
 		if (!tryArchive.isSuccess()) {
 			return Either.fail(tryArchive.whyNot());
 		}
@@ -0,0 +1,54 @@
+package com.dslplatform.compiler.client;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FileIOTest {
+
+	@Test
+	public void textRoundtrip() throws Exception {
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "file-io-" + System.nanoTime());
+		assertTrue(folder.mkdirs());
+		try {
+			final File small = new File(folder, "small.txt");
+			FileIO.writeText(small, "module čćž { 日本 }");
+			assertEquals("module čćž { 日本 }", FileIO.readFile(small).get());
+			assertEquals("module čćž { 日本 }".getBytes("UTF-8").length, small.length());
+			final StringBuilder sb = new StringBuilder();
+			while (sb.length() < 2 * 1024 * 1024) {
+				sb.append("aggregate Šifra { string name; }\n");
+			}
+			final File large = new File(folder, "large.txt");
+			FileIO.writeText(large, sb.toString());
+			assertEquals(sb.toString(), FileIO.readText(large));
+			assertArrayEquals(sb.toString().getBytes("UTF-8"), FileIO.readBytes(large));
+		} finally {
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
+
+	@Test
+	public void findFilesBySuffix() throws Exception {
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "file-io-" + System.nanoTime());
+		assertTrue(new File(folder, "a/b").mkdirs());
+		try {
+			FileIO.writeText(new File(folder, "root.dsl"), "");
+			FileIO.writeText(new File(folder, "a/first.ddd"), "");
+			FileIO.writeText(new File(folder, "a/b/second.dsl"), "");
+			FileIO.writeText(new File(folder, "a/b/other.txt"), "");
+			final List<File> found = FileIO.findFiles(new ContextMock(), folder, Arrays.asList(".dsl", ".ddd"));
+			assertEquals(3, found.size());
+			assertTrue(found.contains(new File(folder, "a/b/second.dsl")));
+			assertFalse(found.contains(new File(folder, "a/b/other.txt")));
+		} finally {
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package com.dslplatform.compiler.client;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ToolCacheTest {
+
+	@Test
+	public void changedToolInvalidatesEntry() throws Exception {
+		final String home = System.getProperty("user.home");
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "tool-cache-" + System.nanoTime());
+		assertTrue(folder.mkdirs());
+		System.setProperty("user.home", folder.getAbsolutePath());
+		final ContextMock context = new ContextMock();
+		try {
+			ToolCache.clear(context);
+			final File tool = new File(folder, "tool");
+			FileIO.writeText(tool, "v1");
+			final List<String> arguments = Collections.singletonList("--version");
+			final String key = ToolCache.key(tool.getAbsolutePath(), "Tool", arguments);
+			final String fingerprint = ToolCache.fingerprint(tool.getAbsolutePath(), arguments);
+			assertNotNull(fingerprint);
+			assertFalse(ToolCache.find(context, key, fingerprint));
+			ToolCache.save(context, key, fingerprint);
+			assertTrue(ToolCache.find(context, key, fingerprint));
+			assertTrue(new File(folder, ".DSL-Platform/tools.cache").isFile());
+			assertEquals(1, new File(folder, ".DSL-Platform").list().length);
+			FileIO.writeText(tool, "v2 upgraded");
+			final String changed = ToolCache.fingerprint(tool.getAbsolutePath(), arguments);
+			assertNotEquals(fingerprint, changed);
+			assertFalse(ToolCache.find(context, key, changed));
+			assertTrue(tool.delete());
+			assertNull(ToolCache.fingerprint(tool.getAbsolutePath(), arguments));
+		} finally {
+			ToolCache.clear(context);
+			System.setProperty("user.home", home);
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
+
+	@Test
+	public void factsAreRememberedPerExecutable() throws Exception {
+		final String home = System.getProperty("user.home");
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "tool-cache-" + System.nanoTime());
+		assertTrue(folder.mkdirs());
+		System.setProperty("user.home", folder.getAbsolutePath());
+		final ContextMock context = new ContextMock();
+		try {
+			ToolCache.clear(context);
+			final File compiler = new File(folder, "dsl-compiler.exe");
+			FileIO.writeText(compiler, "v1");
+			assertFalse(ToolCache.isKnown(context, compiler, "no-multi"));
+			ToolCache.remember(context, compiler, "no-multi");
+			assertTrue(ToolCache.isKnown(context, compiler, "no-multi"));
+			assertFalse(ToolCache.isKnown(context, compiler, "no-json"));
+			FileIO.writeText(compiler, "v2 upgraded");
+			assertFalse(ToolCache.isKnown(context, compiler, "no-multi"));
+		} finally {
+			ToolCache.clear(context);
+			System.setProperty("user.home", home);
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
+}
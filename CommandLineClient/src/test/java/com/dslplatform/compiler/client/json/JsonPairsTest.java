@@ -0,0 +1,59 @@
+package com.dslplatform.compiler.client.json;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class JsonPairsTest {
+
+	private static Map<String, String> read(final String json) throws IOException {
+		final Map<String, String> pairs = new LinkedHashMap<String, String>();
+		final byte[] bytes = json.getBytes("UTF-8");
+		final int count = JSON.readPairs(bytes, bytes.length, new JSON.PairHandler() {
+			@Override
+			public void pair(final String key, final String value) {
+				pairs.put(key, value);
+			}
+		});
+		assertEquals(count, pairs.size());
+		return pairs;
+	}
+
+	@Test
+	public void canReadObject() throws IOException {
+		final Map<String, String> pairs = read("{\"model/A.java\":\"class A {}\", \"B.cs\" : \"class B { string s = \\\"čćž\\\"; }\",\"empty\":null}");
+		assertEquals(3, pairs.size());
+		assertEquals("class A {}", pairs.get("model/A.java"));
+		assertEquals("class B { string s = \"čćž\"; }", pairs.get("B.cs"));
+		assertEquals("", pairs.get("empty"));
+	}
+
+	@Test
+	public void canReadKeyValueArray() throws IOException {
+		final Map<String, String> pairs = read("[{\"Key\":\"a.php\",\"Value\":\"<?php\\n\"},{\"Value\":\"x\",\"Other\":[1,2],\"Key\":\"b.php\"}]");
+		assertEquals(2, pairs.size());
+		assertEquals("<?php\n", pairs.get("a.php"));
+		assertEquals("x", pairs.get("b.php"));
+	}
+
+	@Test
+	public void canReadEmpty() throws IOException {
+		assertTrue(read("{}").isEmpty());
+		assertTrue(read(" [ ] ").isEmpty());
+	}
+
+	@Test(expected = IOException.class)
+	public void missingKeyIsReported() throws IOException {
+		read("[{\"Value\":\"x\"}]");
+	}
+
+	@Test
+	public void canReadString() throws IOException {
+		final byte[] bytes = "\"CREATE TABLE \\\"x\\\";\"".getBytes("UTF-8");
+		assertEquals("CREATE TABLE \"x\";", JSON.readString(bytes, bytes.length));
+	}
+}
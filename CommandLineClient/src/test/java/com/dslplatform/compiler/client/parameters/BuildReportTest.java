@@ -0,0 +1,32 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.Either;
+import com.dslplatform.compiler.client.Utils;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.junit.Assert.*;
+
+public class BuildReportTest {
+
+	@Test
+	public void spansAreSavedOnClose() throws Exception {
+		final File file = File.createTempFile("report", ".json");
+		final ContextMock context = new ContextMock();
+		context.put(BuildReport.INSTANCE, file.getAbsolutePath());
+		assertTrue(BuildReport.INSTANCE.check(context));
+		BuildReport.span(context, "dsl discovery", BuildReport.start());
+		BuildReport.span(context, "compiler request", "java_client", BuildReport.start());
+		BuildReport.span(context, "write files", "java_client", BuildReport.start());
+		context.close();
+		final Either<String> content = Utils.readFile(file);
+		assertTrue(content.isSuccess());
+		final String json = content.get();
+		assertTrue(json.contains("\"dsl discovery\": "));
+		assertTrue(json.contains("\"java_client\": {"));
+		assertTrue(json.contains("{\"phase\": \"write files\", \"target\": \"java_client\""));
+		file.delete();
+	}
+}
@@ -0,0 +1,163 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.FileIO;
+import com.dslplatform.compiler.client.Utils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class CompilerCacheTest {
+
+	private static final long OLD = 1000000000000L;
+
+	private File folder;
+	private File compiler;
+	private File dsl;
+
+	@Before
+	public void setup() throws Exception {
+		folder = new File(System.getProperty("java.io.tmpdir"), "compiler-cache-" + System.nanoTime());
+		assertTrue(new File(folder, "temp").mkdirs());
+		compiler = new File(folder, "dsl-compiler.exe");
+		FileIO.writeText(compiler, "compiler v1");
+		dsl = new File(folder, "model.dsl");
+		FileIO.writeText(dsl, "module model { aggregate Item; }");
+	}
+
+	@After
+	public void cleanup() throws Exception {
+		Utils.deletePath(folder);
+		folder.delete();
+	}
+
+	private ContextMock context(final String size) {
+		final ContextMock context = new ContextMock();
+		context.put(CompilerCache.INSTANCE, size);
+		context.put(DslCompiler.INSTANCE, compiler.getAbsolutePath());
+		context.put(DslPath.INSTANCE, dsl.getAbsolutePath());
+		context.put(TempPath.INSTANCE, new File(folder, "temp").getAbsolutePath());
+		assertTrue(TempPath.INSTANCE.check(context));
+		return context;
+	}
+
+	private String key(final String... arguments) throws Exception {
+		final ContextMock context = context("");
+		return CompilerCache.key(context, Arrays.asList(arguments), DslPath.getDslPaths(context), null);
+	}
+
+	private File cacheFolder() {
+		return new File(new File(folder, "temp"), "compiler-cache");
+	}
+
+	private String[] list(final String extension) {
+		final String[] names = cacheFolder().list(new FilenameFilter() {
+			@Override
+			public boolean accept(final File dir, final String name) {
+				return name.endsWith(extension);
+			}
+		});
+		Arrays.sort(names);
+		return names;
+	}
+
+	@Test
+	public void compilerOnPortIsReported() throws Exception {
+		final ContextMock context = context("");
+		context.put(DslCompiler.INSTANCE, "12345");
+		assertNull(CompilerCache.key(context, Arrays.asList("target=revenj.java"), DslPath.getDslPaths(context), null));
+		assertTrue(context.hasWarning);
+		assertTrue(context.warning.contains("12345"));
+	}
+
+	@Test
+	public void keyIgnoresDslPathsButNotContent() throws Exception {
+		final String original = key("target=revenj.java", "dsl=" + dsl.getAbsolutePath());
+		assertNotNull(original);
+		assertEquals(original, key("target=revenj.java", "dsl=" + dsl.getAbsolutePath()));
+		assertEquals(original, key("target=revenj.java", "dsl=/other/location.dsl", "previous-dsl=/tmp/old.dsl"));
+		assertNotEquals(original, key("target=java_client", "dsl=" + dsl.getAbsolutePath()));
+		assertNotEquals(original, key("target=revenj.java", "namespace=com.test"));
+		FileIO.writeText(dsl, "module model { aggregate Other; }");
+		assertNotEquals(original, key("target=revenj.java"));
+	}
+
+	@Test
+	public void compilerChangeInvalidatesKey() throws Exception {
+		assertTrue(compiler.setLastModified(OLD));
+		final String original = key("target=revenj.java");
+		assertTrue(compiler.setLastModified(OLD + 1000));
+		final String touched = key("target=revenj.java");
+		assertNotEquals(original, touched);
+		FileIO.writeText(compiler, "compiler v2 with a different size");
+		assertTrue(compiler.setLastModified(OLD + 1000));
+		assertNotEquals(touched, key("target=revenj.java"));
+	}
+
+	@Test
+	public void recorderPublishesOnlyOnCommit() throws Exception {
+		final ContextMock context = context("");
+		final Map<String, String> received = new LinkedHashMap<String, String>();
+		final DslCompiler.SourceSink sink = new DslCompiler.SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+				received.put(name, content);
+			}
+		};
+		final CompilerCache.Recorder aborted = CompilerCache.record(context, "aborted", sink);
+		aborted.add("A.java", "class A {}");
+		aborted.abort();
+		assertEquals(0, list(".tmp").length);
+		assertEquals(0, list(".cache").length);
+		final CompilerCache.Recorder recorder = CompilerCache.record(context, "entry", sink);
+		recorder.add("model/Item.java", "class Item {}");
+		recorder.add("model/Šifra.java", "class Šifra {}");
+		assertEquals(1, list(".tmp").length);
+		assertEquals(0, list(".cache").length);
+		recorder.commit();
+		assertEquals(0, list(".tmp").length);
+		assertArrayEquals(new String[]{"entry.cache"}, list(".cache"));
+		final Map<String, String> replayed = new LinkedHashMap<String, String>();
+		assertEquals(2, CompilerCache.replay(context, "entry", new DslCompiler.SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+				replayed.put(name, content);
+			}
+		}));
+		assertEquals(received.get("model/Item.java"), replayed.get("model/Item.java"));
+		assertEquals("class Šifra {}", replayed.get("model/Šifra.java"));
+		assertEquals(-1, CompilerCache.replay(context, "missing", sink));
+	}
+
+	@Test
+	public void evictionRemovesLeastRecentlyUsed() throws Exception {
+		final ContextMock context = context("1");
+		final StringBuilder sb = new StringBuilder();
+		while (sb.length() < 400 * 1024) {
+			sb.append('x');
+		}
+		final String[] names = {"newest", "oldest", "middle"};
+		final long[] times = {OLD + 20000, OLD, OLD + 10000};
+		//store creates the cache folder
+		CompilerCache.record(context, "warmup", null).abort();
+		for (int i = 0; i < names.length; i++) {
+			final File entry = new File(cacheFolder(), names[i] + ".cache");
+			FileIO.writeText(entry, sb.toString());
+			assertTrue(entry.setLastModified(times[i]));
+		}
+		final CompilerCache.Recorder recorder = CompilerCache.record(context, "latest", new DslCompiler.SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+			}
+		});
+		recorder.add("A.java", "class A {}");
+		recorder.commit();
+		assertArrayEquals(new String[]{"latest.cache", "middle.cache", "newest.cache"}, list(".cache"));
+	}
+}
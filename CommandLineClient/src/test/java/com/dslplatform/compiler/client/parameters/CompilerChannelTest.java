@@ -0,0 +1,32 @@
+package com.dslplatform.compiler.client.parameters;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class CompilerChannelTest {
+
+	@Test
+	public void buffersAreAllocatedWithExactSize() {
+		final int size = 5 * 1024 * 1024 + 1;
+		final ByteBuffer large = CompilerChannel.acquire(size);
+		assertEquals(size, large.capacity());
+		assertEquals(size, large.limit());
+		CompilerChannel.release(large);
+		//too large to be retained
+		assertNotSame(large, CompilerChannel.acquire(size));
+	}
+
+	@Test
+	public void smallBuffersAreReused() {
+		final ByteBuffer small = CompilerChannel.acquire(100);
+		assertEquals(64 * 1024, small.capacity());
+		assertEquals(100, small.limit());
+		CompilerChannel.release(small);
+		final ByteBuffer reused = CompilerChannel.acquire(200);
+		assertEquals(64 * 1024, reused.capacity());
+		assertEquals(200, reused.limit());
+	}
+}
@@ -0,0 +1,120 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import org.junit.Test;
+
+import java.io.*;
+import java.util.Date;
+
+import static org.junit.Assert.*;
+
+public class CompilerDaemonTest {
+
+	private static class FakeProcess extends Process {
+		boolean destroyed;
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new ByteArrayOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public int waitFor() {
+			return 0;
+		}
+
+		@Override
+		public int exitValue() {
+			if (!destroyed) throw new IllegalThreadStateException();
+			return 0;
+		}
+
+		@Override
+		public void destroy() {
+			destroyed = true;
+		}
+	}
+
+	private static File createFolder() {
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "compiler-daemon-" + System.nanoTime());
+		assertTrue(folder.mkdirs());
+		return folder;
+	}
+
+	private static File createFile(final File folder, final String name, final String content) throws IOException {
+		final File file = new File(folder, name);
+		final FileOutputStream fos = new FileOutputStream(file);
+		fos.write(content.getBytes("UTF-8"));
+		fos.close();
+		return file;
+	}
+
+	@Test
+	public void damagedPortIsIgnored() {
+		assertEquals(12345, CompilerDaemon.parsePort("12345"));
+		assertEquals(12345, CompilerDaemon.parsePort(" 12345\n"));
+		assertEquals(-1, CompilerDaemon.parsePort(null));
+		assertEquals(-1, CompilerDaemon.parsePort(""));
+		assertEquals(-1, CompilerDaemon.parsePort("12a45"));
+		assertEquals(-1, CompilerDaemon.parsePort("0"));
+		assertEquals(-1, CompilerDaemon.parsePort("-5"));
+		assertEquals(-1, CompilerDaemon.parsePort("65536"));
+	}
+
+	@Test
+	public void expiredLeasesAreRemoved() throws IOException {
+		final File folder = createFolder();
+		final long now = new Date().getTime();
+		final File active = createFile(folder, "20000-a.lease", "");
+		final File expired = createFile(folder, "20000-b.lease", "");
+		final File other = createFile(folder, "30000-c.lease", "");
+		assertTrue(active.setLastModified(now));
+		assertTrue(expired.setLastModified(now - CompilerDaemon.LEASE_TIMEOUT - 5000));
+		assertTrue(other.setLastModified(now));
+		assertEquals(1, CompilerDaemon.activeLeases(folder, 20000, now));
+		assertTrue(active.exists());
+		assertFalse(expired.exists());
+		assertTrue(other.exists());
+		assertEquals(0, CompilerDaemon.activeLeases(folder, 40000, now));
+	}
+
+	@Test
+	public void idleCompilerIsStoppedOnlyWithoutLeases() throws IOException {
+		final File folder = createFolder();
+		final File discovery = createFile(folder, CompilerDaemon.DISCOVERY_FILE, "port=20001\n");
+		final File lease = createFile(folder, "20001-a.lease", "");
+		final FakeProcess process = new FakeProcess();
+		final CompilerDaemon.Owned own = new CompilerDaemon.Owned(new ContextMock(), folder, process);
+		synchronized (CompilerDaemon.class) {
+			CompilerDaemon.owned.put(20001, own);
+		}
+		try {
+			own.idleSince = 1;
+			CompilerDaemon.stopIdle(own);
+			assertFalse(process.destroyed);
+			assertEquals(0, own.idleSince);
+			assertTrue(discovery.exists());
+			assertTrue(lease.delete());
+			CompilerDaemon.stopIdle(own);
+			assertTrue(process.destroyed);
+			assertFalse(discovery.exists());
+			synchronized (CompilerDaemon.class) {
+				assertFalse(CompilerDaemon.owned.containsKey(20001));
+			}
+		} finally {
+			synchronized (CompilerDaemon.class) {
+				CompilerDaemon.owned.remove(20001);
+			}
+		}
+	}
+}
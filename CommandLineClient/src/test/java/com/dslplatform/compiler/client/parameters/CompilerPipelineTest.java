@@ -0,0 +1,124 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.Either;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class CompilerPipelineTest {
+
+	private static void respond(final OutputStream os, final boolean success, final String body) throws IOException {
+		final byte[] bytes = body.getBytes("UTF-8");
+		os.write(success ? new byte[]{'O', 'K', 0, 0} : new byte[]{'E', 'R', 0, 0});
+		os.write(new byte[]{(byte) (bytes.length >> 24), (byte) (bytes.length >> 16), (byte) (bytes.length >> 8), (byte) bytes.length});
+		os.write(bytes);
+	}
+
+	@Test
+	public void responsesAreMatchedInOrder() throws Exception {
+		final ServerSocket server = new ServerSocket(0);
+		final Thread compiler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final Socket client = server.accept();
+					final BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8"));
+					//wait for all requests before responding to verify they were sent back to back
+					final String first = reader.readLine();
+					final String second = reader.readLine();
+					final String third = reader.readLine();
+					final OutputStream os = client.getOutputStream();
+					respond(os, true, first);
+					respond(os, false, second);
+					respond(os, true, third);
+					os.flush();
+				} catch (IOException ignore) {
+				}
+			}
+		});
+		compiler.start();
+		final SocketChannel socket = CompilerChannel.connect(server.getLocalPort());
+		final CompilerPipeline pipeline = new CompilerPipeline(new ContextMock(), socket);
+		try {
+			final CompilerPipeline.Pending a = pipeline.submit("first\n", null, null);
+			final CompilerPipeline.Pending b = pipeline.submit("second\n", null, null);
+			final CompilerPipeline.Pending c = pipeline.submit("third", "\n".getBytes("UTF-8"), null);
+			final Either<byte[]> third = c.get();
+			assertTrue(a.isDone());
+			assertEquals("first", new String(a.get().get(), "UTF-8"));
+			assertFalse(b.get().isSuccess());
+			assertEquals("second", b.get().explainError());
+			assertEquals("third", new String(third.get(), "UTF-8"));
+		} finally {
+			pipeline.close();
+			socket.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void pendingRequestsFailWhenConnectionIsClosed() throws Exception {
+		final ServerSocket server = new ServerSocket(0);
+		final Thread compiler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final Socket client = server.accept();
+					new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8")).readLine();
+					client.close();
+				} catch (IOException ignore) {
+				}
+			}
+		});
+		compiler.start();
+		final SocketChannel socket = CompilerChannel.connect(server.getLocalPort());
+		final CompilerPipeline pipeline = new CompilerPipeline(new ContextMock(), socket);
+		try {
+			final CompilerPipeline.Pending a = pipeline.submit("first\n", null, null);
+			assertFalse(a.get().isSuccess());
+			assertFalse(pipeline.submit("second\n", null, null).get().isSuccess());
+		} finally {
+			pipeline.close();
+			socket.close();
+			server.close();
+		}
+	}
+
+	@Test
+	public void connectionIsClosedWhenCompilerDoesNotRespond() throws Exception {
+		final ServerSocket server = new ServerSocket(0);
+		final Thread compiler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final Socket client = server.accept();
+					final BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8"));
+					while (reader.readLine() != null) {
+					}
+				} catch (IOException ignore) {
+				}
+			}
+		});
+		compiler.setDaemon(true);
+		compiler.start();
+		final SocketChannel socket = CompilerChannel.connect(server.getLocalPort());
+		final CompilerPipeline pipeline = new CompilerPipeline(new ContextMock(), socket, 200);
+		try {
+			final Either<byte[]> result = pipeline.submit("hang\n", null, null).get(5, TimeUnit.SECONDS);
+			assertFalse(result.isSuccess());
+			assertTrue(result.explainError().contains("did not respond"));
+			assertFalse(socket.isOpen());
+		} finally {
+			pipeline.close();
+			socket.close();
+			server.close();
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package com.dslplatform.compiler.client.parameters;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DslCompilerTest {
+
+	@Test
+	public void textIsDecodedOnlyFromJson() throws Exception {
+		final String sql = "\"users\" ADD COLUMN \"name\" VARCHAR;";
+		assertEquals(sql, DslCompiler.readText(sql.getBytes("UTF-8"), false));
+		assertEquals("ALTER \"users\";\n", DslCompiler.readText(" \"ALTER \\\"users\\\";\\n\"".getBytes("UTF-8"), true));
+	}
+
+	@Test
+	public void multiTargetFallbackOnlyOnUnknownTarget() {
+		assertTrue(DslCompiler.isMultiTargetUnsupported("Unknown target: java_client,revenj.net"));
+		assertFalse(DslCompiler.isMultiTargetUnsupported("Error in module Test: unknown type Missing"));
+		assertFalse(DslCompiler.isMultiTargetUnsupported(null));
+	}
+}
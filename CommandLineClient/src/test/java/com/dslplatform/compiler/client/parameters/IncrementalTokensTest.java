@@ -0,0 +1,79 @@
+package com.dslplatform.compiler.client.parameters;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class IncrementalTokensTest {
+
+	private static final String DSL =
+			"module A {\n" +
+			"  aggregate B {\n" +
+			"    string s;\n" +
+			"  }\n" +
+			"}\n" +
+			"// other module\n" +
+			"module C {\n" +
+			"  value D { int i; }\n" +
+			"}\n";
+
+	private static DslCompiler.SyntaxConcept token(final String value, final int line) {
+		final Map<String, Object> map = new HashMap<String, Object>();
+		map.put("Type", "Keyword");
+		map.put("Value", value);
+		map.put("Line", line);
+		map.put("Column", 1);
+		return new DslCompiler.SyntaxConcept(map);
+	}
+
+	@Test
+	public void editInsideModuleIsolatesIt() {
+		final String changed = DSL.replace("    string s;\n", "    string s;\n    int x;\n");
+		final IncrementalTokens.Region region = IncrementalTokens.find(DSL, changed);
+		assertNotNull(region);
+		assertTrue(region.text.startsWith("module A {"));
+		assertTrue(region.text.endsWith("}"));
+		assertEquals(0, region.startLine);
+		assertEquals(4, region.oldEndLine);
+		assertEquals(5, region.newEndLine);
+	}
+
+	@Test
+	public void editInSecondModule() {
+		final String changed = DSL.replace("int i;", "long i;");
+		final IncrementalTokens.Region region = IncrementalTokens.find(DSL, changed);
+		assertNotNull(region);
+		assertEquals("module C {\n  value D { long i; }\n}", region.text);
+		assertEquals(6, region.startLine);
+	}
+
+	@Test
+	public void editBetweenModulesIsNotIsolated() {
+		assertNull(IncrementalTokens.find(DSL, DSL.replace("// other module", "// other modules")));
+	}
+
+	@Test
+	public void unbalancedBracesAreNotIsolated() {
+		assertNull(IncrementalTokens.find(DSL, DSL.replace("  aggregate B {\n", "  aggregate B {{\n")));
+	}
+
+	@Test
+	public void tokensAreSpliced() {
+		final List<DslCompiler.SyntaxConcept> old = Arrays.asList(
+				token("module", 1), token("aggregate", 2), token("string", 3),
+				token("module", 7), token("value", 8));
+		final String changed = DSL.replace("    string s;\n", "    string s;\n    int x;\n");
+		final IncrementalTokens.Region region = IncrementalTokens.find(DSL, changed);
+		final List<DslCompiler.SyntaxConcept> block = Arrays.asList(
+				token("module", 1), token("aggregate", 2), token("string", 3), token("int", 4));
+		final List<DslCompiler.SyntaxConcept> result = IncrementalTokens.splice(old, region, block);
+		assertEquals(6, result.size());
+		assertEquals("int", result.get(3).value);
+		assertEquals(4, result.get(3).line);
+		assertEquals("module", result.get(4).value);
+		assertEquals(8, result.get(4).line);
+		assertEquals(9, result.get(5).line);
+	}
+}
@@ -1,6 +1,7 @@
 package com.dslplatform.compiler.client.parameters;
 
 import com.dslplatform.compiler.client.Context;
+import com.dslplatform.compiler.client.FileIO;
 import com.dslplatform.compiler.client.Utils;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -8,6 +9,9 @@ import org.junit.Test;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
 
 import static org.junit.Assert.*;
 import static org.junit.Assume.*;
@@ -140,4 +144,73 @@ public class JavaPathTest {
 		context.put(JavaPath.INSTANCE, new File(fakeJavaFolder, "bat").getPath());
 		assertTrue(JavaPath.findCompiler(context).isSuccess());
 	}
+
+	// -----------------------------------------------------------------------------------------------------------------
+
+	@Test
+	public void archiveWithServices() throws Exception {
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "archive-" + System.nanoTime());
+		final File classOut = new File(folder, "classes");
+		assertTrue(new File(classOut, "model/inner").mkdirs());
+		try {
+			FileIO.writeText(new File(classOut, "model/A.class"), "A");
+			FileIO.writeText(new File(classOut, "model/inner/B.class"), "B");
+			FileIO.writeText(new File(classOut, "model/ignored.txt"), "ignored");
+			final File output = new File(folder, "model.jar");
+			context.put(Version.INSTANCE, "1.2.3");
+			final Map<String, List<String>> services = new HashMap<String, List<String>>();
+			services.put("org.revenj.extensibility.SystemAspect", Arrays.asList("model.A", "model.inner.B"));
+			assertTrue(JavaPath.makeArchive(context, classOut, output, services).isSuccess());
+			final JarFile jar = new JarFile(output);
+			try {
+				assertEquals("1.2.3", jar.getManifest().getMainAttributes().getValue("Implementation-Version"));
+				assertNotNull(jar.getEntry("model/"));
+				assertNotNull(jar.getEntry("model/inner/B.class"));
+				assertNull(jar.getEntry("model/ignored.txt"));
+				final JarEntry service = jar.getJarEntry("META-INF/services/org.revenj.extensibility.SystemAspect");
+				assertEquals("model.A\nmodel.inner.B\n", FileIO.read(jar.getInputStream(service)));
+			} finally {
+				jar.close();
+			}
+		} finally {
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
+
+	@Test
+	public void reproducibleArchive() throws Exception {
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "archive-" + System.nanoTime());
+		final File classOut = new File(folder, "classes");
+		assertTrue(new File(classOut, "model").mkdirs());
+		try {
+			final File a = new File(classOut, "model/A.class");
+			FileIO.writeText(a, "A");
+			FileIO.writeText(new File(classOut, "model/B.class"), "B");
+			context.put(Reproducible.INSTANCE, null);
+			final File first = new File(folder, "first.jar");
+			final File second = new File(folder, "second.jar");
+			assertTrue(JavaPath.makeArchive(context, classOut, first, null).isSuccess());
+			assertTrue(a.setLastModified(a.lastModified() - 100000));
+			Thread.sleep(2000);
+			assertTrue(JavaPath.makeArchive(context, classOut, second, null).isSuccess());
+			assertArrayEquals(FileIO.readBytes(first), FileIO.readBytes(second));
+			FileIO.writeText(a, "changed");
+			assertTrue(JavaPath.makeArchive(context, classOut, second, null).isSuccess());
+			final JarFile firstJar = new JarFile(first);
+			final JarFile secondJar = new JarFile(second);
+			try {
+				final String firstVersion = firstJar.getManifest().getMainAttributes().getValue("Implementation-Version");
+				final String secondVersion = secondJar.getManifest().getMainAttributes().getValue("Implementation-Version");
+				assertEquals(16, firstVersion.length());
+				assertFalse(firstVersion.equals(secondVersion));
+			} finally {
+				firstJar.close();
+				secondJar.close();
+			}
+		} finally {
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
 }
@@ -0,0 +1,42 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class RuleCacheTest {
+
+	@Test
+	public void rulesAreStoredPerCompiler() throws Exception {
+		final String home = System.getProperty("user.home");
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "rule-cache-" + System.nanoTime());
+		assertTrue(folder.mkdirs());
+		System.setProperty("user.home", folder.getAbsolutePath());
+		try {
+			final ContextMock context = new ContextMock();
+			final File compiler = new File(folder, "dsl-compiler.exe");
+			final FileOutputStream fos = new FileOutputStream(compiler);
+			fos.write(new byte[]{1, 2, 3});
+			fos.close();
+			assertNull(RuleCache.load(context, compiler));
+			RuleCache.save(context, compiler, Arrays.asList(
+					new DslCompiler.RuleInfo("module", "module name { ... }", new String[]{"aggregate", "value"}, "Module grouping"),
+					new DslCompiler.RuleInfo("aggregate", "aggregate name { ... }", new String[0], "Aggregate root")));
+			final RuleCache cache = RuleCache.load(context, compiler);
+			assertNotNull(cache);
+			assertEquals(2, cache.size());
+			final DslCompiler.RuleInfo module = cache.find("module");
+			assertEquals("module name { ... }", module.grammar);
+			assertArrayEquals(new String[]{"aggregate", "value"}, module.children);
+			assertEquals("Aggregate root", cache.find("aggregate").description);
+			assertNull(cache.find("value"));
+		} finally {
+			System.setProperty("user.home", home);
+		}
+	}
+}
@@ -0,0 +1,209 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.Either;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class ServerPoolTest {
+
+	private interface Handler {
+		//null closes the connection and stops the compiler
+		String respond(int process, String command);
+	}
+
+	private static class FakeCompiler extends Process {
+		private final ServerSocket server;
+		private volatile boolean alive = true;
+
+		FakeCompiler(final int id, final int port, final Handler handler) throws IOException {
+			server = new ServerSocket(port);
+			final Thread thread = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						final Socket client = server.accept();
+						final BufferedReader reader = new BufferedReader(new InputStreamReader(client.getInputStream(), "UTF-8"));
+						final OutputStream os = client.getOutputStream();
+						String line;
+						while ((line = reader.readLine()) != null) {
+							final String body = handler.respond(id, line);
+							if (body == null) {
+								destroy();
+								client.close();
+								return;
+							}
+							final byte[] bytes = body.getBytes("UTF-8");
+							os.write(new byte[]{'O', 'K', 0, 0});
+							os.write(new byte[]{(byte) (bytes.length >> 24), (byte) (bytes.length >> 16), (byte) (bytes.length >> 8), (byte) bytes.length});
+							os.write(bytes);
+							os.flush();
+						}
+					} catch (IOException ignore) {
+					}
+				}
+			});
+			thread.setDaemon(true);
+			thread.start();
+		}
+
+		@Override
+		public OutputStream getOutputStream() {
+			return new ByteArrayOutputStream();
+		}
+
+		@Override
+		public InputStream getInputStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public InputStream getErrorStream() {
+			return new ByteArrayInputStream(new byte[0]);
+		}
+
+		@Override
+		public int waitFor() {
+			return 0;
+		}
+
+		@Override
+		public int exitValue() {
+			if (alive) throw new IllegalThreadStateException();
+			return 0;
+		}
+
+		@Override
+		public void destroy() {
+			alive = false;
+			try {
+				server.close();
+			} catch (IOException ignore) {
+			}
+		}
+	}
+
+	private static ServerPool.Launcher launcher(final AtomicInteger started, final Handler handler) {
+		return new ServerPool.Launcher() {
+			@Override
+			public Either<Process> start(final int port) {
+				try {
+					return Either.<Process>success(new FakeCompiler(started.incrementAndGet(), port, handler));
+				} catch (IOException ex) {
+					return Either.fail(ex);
+				}
+			}
+		};
+	}
+
+	private static DslCompiler.SourceSink collect(final Map<String, String> files, final AtomicInteger added) {
+		return new DslCompiler.SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+				added.incrementAndGet();
+				files.put(name, content);
+			}
+		};
+	}
+
+	@Test
+	public void compilerIsReusedAfterRelease() throws Exception {
+		final AtomicInteger started = new AtomicInteger();
+		final ServerPool pool = new ServerPool(new ContextMock(), launcher(started, new Handler() {
+			@Override
+			public String respond(final int process, final String command) {
+				return "{\"a.txt\":\"" + process + "\"}";
+			}
+		}), 1);
+		try {
+			final Map<String, String> files = new HashMap<String, String>();
+			final AtomicInteger added = new AtomicInteger();
+			assertTrue(pool.run("first\n", collect(files, added)).isSuccess());
+			assertTrue(pool.run("second\n", collect(files, added)).isSuccess());
+			assertEquals(1, started.get());
+			assertEquals(2, added.get());
+			assertEquals("1", files.get("a.txt"));
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void deadCompilerIsReplacedAndRequestRetried() throws Exception {
+		final AtomicInteger started = new AtomicInteger();
+		final ServerPool pool = new ServerPool(new ContextMock(), launcher(started, new Handler() {
+			@Override
+			public String respond(final int process, final String command) {
+				return process == 1 ? null : "{\"a.txt\":\"" + process + "\"}";
+			}
+		}), 1);
+		try {
+			final Map<String, String> files = new HashMap<String, String>();
+			final AtomicInteger added = new AtomicInteger();
+			assertTrue(pool.run("compile\n", collect(files, added)).isSuccess());
+			assertEquals(2, started.get());
+			assertEquals(1, added.get());
+			assertEquals("2", files.get("a.txt"));
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void invalidResponseIsNotRetried() throws Exception {
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger requests = new AtomicInteger();
+		final ServerPool pool = new ServerPool(new ContextMock(), launcher(started, new Handler() {
+			@Override
+			public String respond(final int process, final String command) {
+				return requests.incrementAndGet() == 1 ? "{\"a.txt\":" : "{\"a.txt\":\"ok\"}";
+			}
+		}), 1);
+		try {
+			final Map<String, String> files = new HashMap<String, String>();
+			final AtomicInteger added = new AtomicInteger();
+			assertFalse(pool.run("broken\n", collect(files, added)).isSuccess());
+			assertEquals(1, requests.get());
+			assertTrue(pool.run("valid\n", collect(files, added)).isSuccess());
+			assertEquals(1, started.get());
+			assertEquals("ok", files.get("a.txt"));
+		} finally {
+			pool.close();
+		}
+	}
+
+	@Test
+	public void sinkFailureIsReportedOnce() throws Exception {
+		final AtomicInteger started = new AtomicInteger();
+		final AtomicInteger requests = new AtomicInteger();
+		final ServerPool pool = new ServerPool(new ContextMock(), launcher(started, new Handler() {
+			@Override
+			public String respond(final int process, final String command) {
+				requests.incrementAndGet();
+				return "{\"a.txt\":\"a\",\"b.txt\":\"b\"}";
+			}
+		}), 2);
+		try {
+			final AtomicInteger added = new AtomicInteger();
+			final Either<byte[]> result = pool.run("compile\n", new DslCompiler.SourceSink() {
+				@Override
+				public void add(final String name, final String content) throws IOException {
+					if (added.incrementAndGet() == 2) throw new IOException("disk full");
+				}
+			});
+			assertFalse(result.isSuccess());
+			assertEquals(1, requests.get());
+			assertEquals(2, added.get());
+		} finally {
+			pool.close();
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.Either;
+import com.dslplatform.compiler.client.Utils;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SourceWriterTest {
+
+	@Test
+	public void onlyChangedFilesAreWritten() throws Exception {
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "source-writer-" + System.nanoTime());
+		final Map<File, String> files = new LinkedHashMap<File, String>();
+		for (int i = 0; i < 300; i++) {
+			files.put(new File(folder, "module" + (i % 7) + "/File" + i + ".java"), "class File" + i + " {}");
+		}
+		final ContextMock context = new ContextMock();
+		final SourceWriter.Result first = SourceWriter.write(context, folder, files);
+		assertEquals(300, first.written.size());
+		assertEquals(0, first.unchanged.size());
+		final File changed = new File(folder, "module3/File10.java");
+		files.put(changed, "class File10 { int x; }");
+		final SourceWriter.Result second = SourceWriter.write(context, folder, files);
+		assertEquals(1, second.written.size());
+		assertEquals(changed, second.written.get(0));
+		assertEquals(299, second.unchanged.size());
+		final Either<String> content = Utils.readFile(changed);
+		assertEquals("class File10 { int x; }", content.get());
+		assertTrue(second.hasManifest);
+		final File leftover = new File(folder, "module6/File6.java");
+		files.remove(leftover);
+		final SourceWriter.Result third = SourceWriter.write(context, folder, files);
+		assertEquals(0, third.written.size());
+		assertEquals(1, third.removed.size());
+		assertFalse(leftover.exists());
+	}
+
+	@Test
+	public void externalChangesAreDetected() throws Exception {
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "source-writer-" + System.nanoTime());
+		final File file = new File(folder, "model/Model.java");
+		final Map<File, String> files = new LinkedHashMap<File, String>();
+		files.put(file, "class Model {}");
+		final ContextMock context = new ContextMock();
+		assertFalse(SourceWriter.write(context, folder, files).hasManifest);
+		final FileOutputStream fos = new FileOutputStream(file);
+		fos.write("class Model { int edited; }".getBytes("UTF-8"));
+		fos.close();
+		assertEquals(1, SourceWriter.write(context, folder, files).written.size());
+		assertEquals("class Model {}", Utils.readFile(file).get());
+	}
+
+	@Test
+	public void stagedOutputIsPublished() throws Exception {
+		final File parent = new File(System.getProperty("java.io.tmpdir"), "source-writer-" + System.nanoTime());
+		final File root = new File(parent, "java_client");
+		final ContextMock context = new ContextMock();
+		final Map<File, String> files = new LinkedHashMap<File, String>();
+		files.put(new File(root, "model/A.java"), "class A {}");
+		files.put(new File(root, "model/B.java"), "class B {}");
+		files.put(new File(root, "model/C.java"), "class C {}");
+		SourceWriter.write(context, root, files);
+		final File staging = StagedOutput.prepare(context, root);
+		final Map<File, String> staged = new LinkedHashMap<File, String>();
+		staged.put(new File(staging, "model/A.java"), "class A {}");
+		staged.put(new File(staging, "model/B.java"), "class B { int b; }");
+		final SourceWriter.Result result = SourceWriter.write(context, root, staging, staged);
+		assertEquals(1, result.unchanged.size());
+		assertEquals(1, result.written.size());
+		assertEquals(1, result.removed.size());
+		assertTrue(new File(root, "model/C.java").exists());
+		//manifest still describes the live folder until staging is published
+		final File manifest = SourceWriter.manifestFor(root);
+		assertTrue(Utils.readFile(manifest).get().contains("model/C.java"));
+		StagedOutput.publish(context, root, staging);
+		result.saveManifest(context);
+		assertFalse(Utils.readFile(manifest).get().contains("model/C.java"));
+		assertFalse(staging.exists());
+		assertEquals("class A {}", Utils.readFile(new File(root, "model/A.java")).get());
+		assertEquals("class B { int b; }", Utils.readFile(new File(root, "model/B.java")).get());
+		assertFalse(new File(root, "model/C.java").exists());
+		final Map<File, String> published = new LinkedHashMap<File, String>();
+		published.put(new File(root, "model/A.java"), "class A {}");
+		published.put(new File(root, "model/B.java"), "class B { int b; }");
+		assertEquals(2, SourceWriter.write(context, root, published).unchanged.size());
+	}
+}
@@ -0,0 +1,140 @@
+package com.dslplatform.compiler.client.parameters;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.Either;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.*;
+
+import static org.junit.Assert.*;
+
+public class TokenParserTest {
+
+	private ServerSocket server;
+	private final BlockingQueue<String> received = new LinkedBlockingQueue<String>();
+	private final Semaphore responses = new Semaphore(0);
+	private final ExecutorService responder = Executors.newSingleThreadExecutor();
+	private DslCompiler.TokenParser parser;
+
+	@Before
+	public void startCompiler() throws IOException {
+		server = new ServerSocket(0);
+		final Thread compiler = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					final Socket client = server.accept();
+					final DataInputStream is = new DataInputStream(new BufferedInputStream(client.getInputStream()));
+					final StringBuilder line = new StringBuilder();
+					int c;
+					while ((c = is.read()) != -1) {
+						if (c != '\n') {
+							line.append((char) c);
+							continue;
+						}
+						final String command = line.toString();
+						line.setLength(0);
+						final int length = Integer.parseInt(command.substring("tokens=".length(), command.indexOf(' ')));
+						final byte[] dsl = new byte[length];
+						is.readFully(dsl);
+						final String value = new String(dsl, "UTF-8");
+						received.add(value);
+						respond(client.getOutputStream(), value);
+					}
+				} catch (Exception ignore) {
+				}
+			}
+		});
+		compiler.setDaemon(true);
+		compiler.start();
+		final File lease = File.createTempFile("token-parser", ".lease");
+		parser = new DslCompiler.TokenParser(new ContextMock(), new File("dsl-compiler.exe"), new CompilerDaemon.Lease(server.getLocalPort(), lease, null));
+		parser.setIncremental(false);
+	}
+
+	//requests keep being read while responses wait to be released
+	private void respond(final OutputStream os, final String value) {
+		responder.submit(new Callable<Void>() {
+			@Override
+			public Void call() throws Exception {
+				responses.acquire();
+				final byte[] body = ("{\"Tokens\":[{\"Type\":\"Identifier\",\"Value\":\"" + value + "\",\"Line\":1,\"Column\":0}]}").getBytes("UTF-8");
+				os.write(new byte[]{'O', 'K', 0, 0});
+				os.write(new byte[]{(byte) (body.length >> 24), (byte) (body.length >> 16), (byte) (body.length >> 8), (byte) body.length});
+				os.write(body);
+				os.flush();
+				return null;
+			}
+		});
+	}
+
+	@After
+	public void stopCompiler() throws IOException {
+		responses.release(100);
+		parser.close();
+		server.close();
+		responder.shutdownNow();
+	}
+
+	private static String value(final Future<Either<DslCompiler.ParseResult>> future) throws Exception {
+		final Either<DslCompiler.ParseResult> result = future.get(5, TimeUnit.SECONDS);
+		if (!result.isSuccess()) fail(result.explainError());
+		return result.get().tokens.get(0).value;
+	}
+
+	private static void assertCancelled(final Future<Either<DslCompiler.ParseResult>> future) throws Exception {
+		assertTrue(future.isCancelled());
+		try {
+			future.get(5, TimeUnit.SECONDS);
+			fail("Expecting cancellation");
+		} catch (CancellationException ignore) {
+		}
+	}
+
+	@Test
+	public void queuedVersionsAreCoalesced() throws Exception {
+		final Future<Either<DslCompiler.ParseResult>> a1 = parser.parseAsync("a", "a1", 1);
+		assertEquals("a1", received.poll(5, TimeUnit.SECONDS));
+		final Future<Either<DslCompiler.ParseResult>> b1 = parser.parseAsync("b", "b1", 2);
+		final Future<Either<DslCompiler.ParseResult>> b2 = parser.parseAsync(new String("b"), "b2", 3);
+		assertCancelled(b1);
+		responses.release(2);
+		assertEquals("a1", value(a1));
+		assertEquals("b2", value(b2));
+		assertEquals("b2", received.poll(5, TimeUnit.SECONDS));
+		assertTrue(received.isEmpty());
+	}
+
+	@Test
+	public void runningVersionStopsWaitingForCompiler() throws Exception {
+		final BlockingQueue<String> notified = new LinkedBlockingQueue<String>();
+		final DslCompiler.TokenParser.ParseListener listener = new DslCompiler.TokenParser.ParseListener() {
+			@Override
+			public void parsed(final Either<DslCompiler.ParseResult> result) {
+				notified.add(result.get().tokens.get(0).value);
+			}
+		};
+		final Future<Either<DslCompiler.ParseResult>> first = parser.parseAsync("a", "first", 1, listener);
+		assertEquals("first", received.poll(5, TimeUnit.SECONDS));
+		final Future<Either<DslCompiler.ParseResult>> second = parser.parseAsync("a", "second", 2, listener);
+		assertCancelled(first);
+		//newer version reaches the compiler while the stale response is still pending
+		assertEquals("second", received.poll(5, TimeUnit.SECONDS));
+		responses.release(2);
+		assertEquals("second", value(second));
+		assertEquals("second", notified.poll(5, TimeUnit.SECONDS));
+		assertTrue(notified.isEmpty());
+	}
+
+	@Test
+	public void olderVersionIsRejected() throws Exception {
+		responses.release(1);
+		assertEquals("new", value(parser.parseAsync("a", "new", 5)));
+		assertCancelled(parser.parseAsync("a", "old", 4));
+	}
+}
@@ -0,0 +1,53 @@
+package com.dslplatform.compiler.client.parameters;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class XmlSourceReaderTest {
+
+	private static Map<String, String> read(final String xml) throws IOException {
+		final Map<String, String> files = new LinkedHashMap<String, String>();
+		XmlSourceReader.read(new ByteArrayInputStream(xml.getBytes("UTF-8")), new DslCompiler.SourceSink() {
+			@Override
+			public void add(final String name, final String content) {
+				files.put(name, content);
+			}
+		});
+		return files;
+	}
+
+	@Test
+	public void canReadKeyValuePairs() throws IOException {
+		final Map<String, String> files = read(
+				"<ArrayOfKeyValueOfstringstring xmlns=\"http://schemas.microsoft.com/2003/10/Serialization/Arrays\">" +
+						"<KeyValueOfstringstring><Key>model/A.java</Key><Value>class A {}</Value></KeyValueOfstringstring>" +
+						"<KeyValueOfstringstring><Key>model/B.java</Key><Value>class B { String s = \"&lt;čćž&gt;\"; }</Value></KeyValueOfstringstring>" +
+						"<KeyValueOfstringstring><Key>empty.txt</Key><Value/></KeyValueOfstringstring>" +
+						"</ArrayOfKeyValueOfstringstring>");
+		assertEquals(3, files.size());
+		assertEquals("class A {}", files.get("model/A.java"));
+		assertEquals("class B { String s = \"<čćž>\"; }", files.get("model/B.java"));
+		assertEquals("", files.get("empty.txt"));
+	}
+
+	@Test
+	public void emptyResponse() throws IOException {
+		assertTrue(read("<ArrayOfKeyValueOfstringstring/>").isEmpty());
+	}
+
+	@Test(expected = IOException.class)
+	public void missingValueIsReported() throws IOException {
+		read("<root><item><Key>name</Key></item></root>");
+	}
+
+	@Test(expected = IOException.class)
+	public void invalidXmlIsReported() throws IOException {
+		read("Error: unable to compile");
+	}
+}
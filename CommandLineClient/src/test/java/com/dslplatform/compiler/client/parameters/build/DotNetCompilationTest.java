@@ -0,0 +1,16 @@
+package com.dslplatform.compiler.client.parameters.build;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DotNetCompilationTest {
+
+	@Test
+	public void onlyMissingPackagesTriggerRestore() {
+		assertTrue(DotNetCompilation.isMissingRestore("error NETSDK1004: Assets file 'obj/project.assets.json' not found."));
+		assertTrue(DotNetCompilation.isMissingRestore("error NU1101: Unable to find package Revenj.Core."));
+		assertFalse(DotNetCompilation.isMissingRestore("Model.cs(12,5): error CS1002: ; expected"));
+		assertFalse(DotNetCompilation.isMissingRestore(null));
+	}
+}
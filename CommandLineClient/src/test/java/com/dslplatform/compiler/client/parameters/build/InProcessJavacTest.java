@@ -0,0 +1,48 @@
+package com.dslplatform.compiler.client.parameters.build;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.Either;
+import com.dslplatform.compiler.client.FileIO;
+import com.dslplatform.compiler.client.Utils;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class InProcessJavacTest {
+
+	@Test
+	public void compileWithDiagnostics() throws Exception {
+		final ContextMock context = new ContextMock();
+		Assume.assumeTrue(InProcessJavac.isAvailable(context));
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "javac-" + System.nanoTime());
+		final File classOut = new File(folder, "classes");
+		assertTrue(new File(folder, "model").mkdirs());
+		assertTrue(classOut.mkdirs());
+		try {
+			final File valid = new File(folder, "model/Valid.java");
+			FileIO.writeText(valid, "package model; public class Valid { public int x; }");
+			final List<String> options = Arrays.asList("-encoding", "UTF-8", "-Xlint:none");
+			final List<File> classPath = Collections.singletonList(folder);
+			final Either<String> success = InProcessJavac.compile(
+					context, options, Collections.singletonList(valid), classPath, classOut, null);
+			assertTrue(success.isSuccess() ? null : success.explainError(), success.isSuccess());
+			assertTrue(new File(classOut, "model/Valid.class").exists());
+			final File invalid = new File(folder, "model/Invalid.java");
+			FileIO.writeText(invalid, "package model;\npublic class Invalid { Missing m; }");
+			final Either<String> failure = InProcessJavac.compile(
+					context, options, Collections.singletonList(invalid), classPath, classOut, null);
+			assertFalse(failure.isSuccess());
+			assertTrue(failure.explainError(), failure.explainError().contains("Invalid.java:2: error: "));
+			context.close();
+		} finally {
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.dslplatform.compiler.client.parameters.build;
+
+import com.dslplatform.compiler.client.ContextMock;
+import com.dslplatform.compiler.client.Either;
+import com.dslplatform.compiler.client.FileIO;
+import com.dslplatform.compiler.client.Utils;
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IncrementalJavaTest {
+
+	private static final long OLD = 1000000000000L;
+
+	@Test
+	public void onlyDependentsAreRecompiled() throws Exception {
+		final ContextMock context = new ContextMock();
+		Assume.assumeTrue(InProcessJavac.isAvailable(context));
+		final File folder = new File(System.getProperty("java.io.tmpdir"), "incremental-" + System.nanoTime());
+		final File source = new File(folder, "java");
+		final File classOut = new File(folder, "classes");
+		assertTrue(new File(source, "model").mkdirs());
+		try {
+			final List<String> options = Arrays.asList("-encoding", "UTF-8", "-Xlint:none");
+			final File base = new File(source, "model/Base.java");
+			FileIO.writeText(base, "package model; public class Base { public int id; }");
+			FileIO.writeText(new File(source, "model/Child.java"), "package model; public class Child extends Base { }");
+			FileIO.writeText(new File(source, "model/User.java"), "package model; public class User { Child c; Object f() { return c.id; } }");
+			FileIO.writeText(new File(source, "model/Other.java"), "package model; public class Other { }");
+			assertCompiled(IncrementalJava.compile(context, options, source, classOut, new File[0]));
+			for (final String name : Arrays.asList("Base", "Child", "User", "Other")) {
+				assertTrue(new File(classOut, "model/" + name + ".class").setLastModified(OLD));
+			}
+			FileIO.writeText(base, "package model; public class Base { public long id; }");
+			assertCompiled(IncrementalJava.compile(context, options, source, classOut, new File[0]));
+			assertTrue(new File(classOut, "model/Base.class").lastModified() != OLD);
+			assertTrue(new File(classOut, "model/Child.class").lastModified() != OLD);
+			assertTrue(new File(classOut, "model/User.class").lastModified() != OLD);
+			assertEquals(OLD, new File(classOut, "model/Other.class").lastModified());
+			assertTrue(new File(source, "model/Other.java").delete());
+			assertCompiled(IncrementalJava.compile(context, options, source, classOut, new File[0]));
+			assertFalse(new File(classOut, "model/Other.class").exists());
+			context.close();
+		} finally {
+			Utils.deletePath(folder);
+			folder.delete();
+		}
+	}
+
+	private static void assertCompiled(final Either<String> result) {
+		assertTrue(result.isSuccess() ? null : result.explainError(), result.isSuccess());
+	}
+}
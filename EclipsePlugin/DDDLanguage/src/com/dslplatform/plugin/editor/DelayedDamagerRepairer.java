@@ -19,6 +19,14 @@ public class DelayedDamagerRepairer extends DefaultDamagerRepairer {
 		this.delay = delay;
 		com.dslplatform.plugin.Logger.info("STARTING ParseJob");
 		this.parseJob = new ParseJob("Parsing DSL", this, updater);
+		if (scanner instanceof TokenScanner) {
+			((TokenScanner) scanner).setOnParsed(new Runnable() {
+				@Override
+				public void run() {
+					parseJob.schedule();
+				}
+			});
+		}
 	}
 
 	 /*
@@ -33,7 +41,11 @@ public class DelayedDamagerRepairer extends DefaultDamagerRepairer {
 		this.parseJob.schedule(this.delay);
 	}
 		
-	public void updatePresentation (TextPresentation presentation, ITypedRegion region) {
+	/**
+	 * Returns false while tokens are still being parsed. Job is scheduled again when they arrive
+	 */
+	public boolean updatePresentation (TextPresentation presentation, ITypedRegion region) {
 		super.createPresentation(presentation, region);
+		return !(fScanner instanceof TokenScanner) || !((TokenScanner) fScanner).isPending();
 	}
 }
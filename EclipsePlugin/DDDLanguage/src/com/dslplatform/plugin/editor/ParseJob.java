@@ -33,7 +33,9 @@ public class ParseJob extends Job {
 	@Override
 	protected IStatus run(IProgressMonitor monitor) {
 		
-		dr.updatePresentation(presentation, region);
+		if (!dr.updatePresentation(presentation, region)) {
+			return Status.OK_STATUS;
+		}
 		
 		final Display display = PlatformUI.getWorkbench().getDisplay();
 
@@ -7,6 +7,7 @@ import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.eclipse.jface.text.BadLocationException;
 import org.eclipse.jface.text.IDocument;
@@ -31,6 +32,11 @@ public class TokenScanner implements ITokenScanner {
 	private final List<Integer> lineOffsets;
 	private int lastScannedIndex;
 	private static DslCompiler.TokenParser tokenParser;
+	private static final AtomicLong versions = new AtomicLong();
+	private Runnable onParsed;
+	private String parsedDsl;
+	private Either<DslCompiler.ParseResult> parsed;
+	private boolean pending;
 
 	static {
 		Context context = new Context();
@@ -59,6 +65,16 @@ public class TokenScanner implements ITokenScanner {
 		lineOffsets = new ArrayList<Integer>();
 	}
 
+	// called when tokens for the last scanned text arrive
+	public void setOnParsed(Runnable onParsed) {
+		this.onParsed = onParsed;
+	}
+
+	// tokens for the last scanned text are still being parsed
+	public boolean isPending() {
+		return pending;
+	}
+
 	@Override
 	public void setRange(final IDocument document, int offset, int length) {
 		try {
@@ -107,11 +123,40 @@ public class TokenScanner implements ITokenScanner {
 		return getLastConcept().value.length();
 	}
 
-	private synchronized List<DslCompiler.SyntaxConcept> parseTokens(String dsl) {
+	private List<DslCompiler.SyntaxConcept> parseTokens(final String dsl) {
 		if (tokenParser == null)
 			return new ArrayList<DslCompiler.SyntaxConcept>(0);
 
-		Either<DslCompiler.ParseResult> result = tokenParser.parse(dsl);
+		final Either<DslCompiler.ParseResult> result;
+		synchronized (this) {
+			if (!dsl.equals(parsedDsl)) {
+				parsedDsl = dsl;
+				parsed = null;
+				tokenParser.parseAsync(this, dsl, versions.incrementAndGet(), new DslCompiler.TokenParser.ParseListener() {
+					@Override
+					public void parsed(Either<DslCompiler.ParseResult> value) {
+						synchronized (TokenScanner.this) {
+							if (!dsl.equals(parsedDsl)) return;
+							//failure is not remembered, so the next highlight pass sends a new request
+							if (!value.isSuccess() || value.get().tokens == null) {
+								Logger.info("Parsing FAIL");
+								Logger.info(value.isSuccess() ? "Missing tokens" : value.explainError());
+								parsedDsl = null;
+								return;
+							}
+							parsed = value;
+						}
+						Runnable callback = onParsed;
+						if (callback != null) callback.run();
+					}
+				});
+			}
+			result = parsed;
+		}
+		pending = result == null;
+		if (pending) {
+			return new ArrayList<DslCompiler.SyntaxConcept>(0);
+		}
 		if (!result.isSuccess() || result.get().tokens == null) {
 			// TODO markers
 			Logger.info("Parsing FAIL");
@@ -138,6 +183,7 @@ public class TokenScanner implements ITokenScanner {
 
 	private void parse(final String script, String content) {
 		reset();
+		pending = false;
 		concepts.addAll(content.length() > 0 && tokenParser != null
 				? parseTokens(content)
 				: new ArrayList<DslCompiler.SyntaxConcept>(0));
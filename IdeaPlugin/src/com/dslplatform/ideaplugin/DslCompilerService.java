@@ -11,12 +11,28 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Stack;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class DslCompilerService {
 
 	private DslCompiler.TokenParser tokenParser;
 	private final List<Runnable> notifications = new ArrayList<Runnable>();
+	private final AtomicLong versions = new AtomicLong();
+	private final Map<Object, Parsed> analyzed = new WeakHashMap<Object, Parsed>();
+
+	private static class Parsed {
+		final String dsl;
+		//null while parsing is in progress
+		final Either<List<DslCompiler.SyntaxConcept>> tokens;
+
+		Parsed(String dsl, Either<List<DslCompiler.SyntaxConcept>> tokens) {
+			this.dsl = dsl;
+			this.tokens = tokens;
+		}
+	}
 
 	public DslCompilerService() {
 		final Logger logger = com.intellij.openapi.diagnostic.Logger.getInstance("DSL Platform");
@@ -78,13 +94,15 @@ public class DslCompilerService {
 		}
 	}
 
-	Either<List<AST>> analyze(String dsl) {
+	//editor thread never waits on the compiler. Until the tokens for this text arrive, a failure is returned
+	//and onReady is called once they are available
+	Either<List<AST>> analyze(Object document, String dsl, Runnable onReady) {
 		if (dsl.trim().isEmpty()) {
 			List<AST> empty = new ArrayList<AST>(0);
 			return Either.success(empty);
 		}
 		if (tokenParser == null) return Either.fail("Token parser not ready");
-		Either<List<DslCompiler.SyntaxConcept>> tryParsed = parseTokens(dsl);
+		Either<List<DslCompiler.SyntaxConcept>> tryParsed = parseTokens(document, dsl, onReady);
 		if (!tryParsed.isSuccess()) {
 			return Either.fail(tryParsed.explainError());
 		}
@@ -121,12 +139,32 @@ public class DslCompilerService {
 		return Either.success(newAst);
 	}
 
-	private synchronized Either<List<DslCompiler.SyntaxConcept>> parseTokens(String dsl) {
-		Either<DslCompiler.ParseResult> result = tokenParser.parse(dsl);
-		if (!result.isSuccess() || result.get().tokens == null) {
-			return Either.fail("Parser not ready");
+	private Either<List<DslCompiler.SyntaxConcept>> parseTokens(final Object document, final String dsl, final Runnable onReady) {
+		synchronized (analyzed) {
+			final Parsed last = analyzed.get(document);
+			if (last != null && last.dsl.equals(dsl)) {
+				return last.tokens != null ? last.tokens : Either.<List<DslCompiler.SyntaxConcept>>fail("Parsing in progress");
+			}
+			analyzed.put(document, new Parsed(dsl, null));
 		}
-		return Either.success(result.get().tokens);
+		tokenParser.parseAsync(document, dsl, versions.incrementAndGet(), new DslCompiler.TokenParser.ParseListener() {
+			@Override
+			public void parsed(Either<DslCompiler.ParseResult> result) {
+				final boolean failed = !result.isSuccess() || result.get().tokens == null;
+				synchronized (analyzed) {
+					final Parsed last = analyzed.get(document);
+					if (last == null || !last.dsl.equals(dsl)) return;
+					//failure is not remembered, so the next highlight pass sends a new request
+					if (failed) {
+						analyzed.remove(document);
+						return;
+					}
+					analyzed.put(document, new Parsed(dsl, Either.success(result.get().tokens)));
+				}
+				onReady.run();
+			}
+		});
+		return Either.fail("Parsing in progress");
 	}
 
 }
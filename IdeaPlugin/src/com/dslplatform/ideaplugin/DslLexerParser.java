@@ -162,6 +162,16 @@ public class DslLexerParser extends Lexer {
 		}
 	};
 
+	//tokens are parsed in the background and refresh picks them up
+	private final Runnable scheduleWhenParsed = new Runnable() {
+		@Override
+		public void run() {
+			if (application != null && isActive) {
+				application.invokeLater(scheduleRefresh);
+			}
+		}
+	};
+
 	private List<AST> lastParsedAnalysis;
 	private String lastParsedDsl;
 
@@ -176,7 +186,7 @@ public class DslLexerParser extends Lexer {
 				lastDsl = lastParsedDsl;
 				forceRefresh = false;
 			} else {
-				Either<List<AST>> tryNewAst = dslService.analyze(dsl);
+				Either<List<AST>> tryNewAst = dslService.analyze(this, dsl, scheduleWhenParsed);
 				if (tryNewAst.isSuccess()) {
 					List<AST> newAst = tryNewAst.get();
 					if (newAst.size() == 0) {
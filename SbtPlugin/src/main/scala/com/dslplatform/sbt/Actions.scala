@@ -14,11 +14,12 @@ import sbt.{File, IO, Logger}
 
 import scala.collection.mutable
 import scala.collection.mutable.ArrayBuffer
-import scala.util.Random
 
 object Actions {
 
-  private case class ServerInfo(port: Int, process: Option[Process])
+  private case class ServerInfo(port: Int, process: Option[Process], lease: Option[CompilerDaemon.Lease]) {
+    def isDead: Boolean = process.exists(t => !t.isAlive) || lease.exists(l => !l.isAlive)
+  }
 
   private var serverInfo: Option[ServerInfo] = None
 
@@ -56,7 +57,7 @@ object Actions {
           } else None
         }
         if (livePort.isDefined) {
-          serverInfo = Some(ServerInfo(livePort.get, None))
+          serverInfo = Some(ServerInfo(livePort.get, None, None))
         } else {
           val path = {
             if (compiler == null || compiler.isEmpty) {
@@ -73,12 +74,22 @@ object Actions {
             logger.foreach(_.error("Unable to setup dsl-compiler.exe. Please check if Mono/.NET is installed and available on path."))
           } else {
             if (new File(path).exists()) {
-              val rnd = new Random
-              val value = port.getOrElse(40000 + rnd.nextInt(20000))
-              logger.foreach(_.info(s"Starting DSL Platform compiler found at: $path on port: $value"))
               val serverCtx = new DslContext(logger, verbose, ansi)
-              val process = startServerMode(serverCtx, path, value)
-              serverInfo = Some(ServerInfo(value, Some(process)))
+              if (port.isDefined) {
+                val value = port.get
+                logger.foreach(_.info(s"Starting DSL Platform compiler found at: $path on port: $value"))
+                val process = startServerMode(serverCtx, path, value)
+                serverInfo = Some(ServerInfo(value, Some(process), None))
+              } else {
+                //attach to the compiler shared with IDE plugins and other builds
+                val lease = CompilerDaemon.acquire(serverCtx, new File(path))
+                if (lease.isSuccess) {
+                  logger.foreach(_.info(s"Using shared DSL Platform compiler found at: $path on port: ${lease.get.port}"))
+                  serverInfo = Some(ServerInfo(lease.get.port, None, Some(lease.get)))
+                } else {
+                  logger.foreach(_.error(lease.explainError()))
+                }
+              }
             } else {
               logger.foreach(_.error(s"Unable to find specified dsl-compiler at $path"))
             }
@@ -127,6 +138,8 @@ object Actions {
           case ex: Throwable =>
             logger.foreach(_.error(ex.getMessage))
         }
+      case Some(si) if si.lease.isDefined =>
+        si.lease.get.invalidate()
       case _ =>
     }
     serverInfo = None
@@ -149,10 +162,14 @@ object Actions {
     customSettings: Seq[String] = Nil,
     dependencies: Option[File] = None,
     classPath: Classpath,
-    latest: Boolean = true): File = {
+    latest: Boolean = true,
+    scalaServer: Boolean = false): File = {
 
     val ctx = new DslContext(Some(logger), verbose, ansi)
     ctx.put(target.toString, output.getAbsolutePath)
+    if (scalaServer) {
+      ctx.put(ScalaServer.INSTANCE, "")
+    }
     addVersionAndSettings(ctx, target, classPath, settings, customSettings, namespace)
     if (dependencies.isDefined) {
       ctx.put(s"dependency:$target", dependencies.get.getAbsolutePath)
@@ -383,11 +400,11 @@ object Actions {
     val startedNow = {
       if (serverMode) {
         val info = serverInfo
-        if (info.flatMap(_.process).exists(t => !t.isAlive)) {
+        if (info.exists(_.isDead)) {
           logger.warn("Dead DSL Platform process detected. Will try restart...")
-          val port = info.get.port
+          val port = if (info.get.lease.isDefined) serverPort else Some(info.get.port)
           stopServerMode(Some(logger))
-          setupServerMode(compiler, Some(logger), verbose, ansi, serverURL, Some(port))
+          setupServerMode(compiler, Some(logger), verbose, ansi, serverURL, port)
           true
         } else if (info.isEmpty) {
           setupServerMode(compiler, Some(logger), verbose, ansi, serverURL, serverPort)
@@ -442,7 +459,7 @@ object Actions {
       case _ =>
         logger.warn(s"DSL Platform server not responding on ${info.port}")
         stopServerMode(Some(logger))
-        setupServerMode(compiler, Some(logger), verbose, ansi, serverURL, Some(info.port))
+        setupServerMode(compiler, Some(logger), verbose, ansi, serverURL, if (info.lease.isDefined) None else Some(info.port))
     }
   }
 
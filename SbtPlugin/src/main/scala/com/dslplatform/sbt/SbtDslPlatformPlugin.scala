@@ -16,6 +16,7 @@ object SbtDslPlatformPlugin extends AutoPlugin {
   object autoImport {
     val dsl = taskKey[Seq[File]]("Compile DSL into appropriate targets (e.g. Scala sources)")
     val dslGenerate = taskKey[Seq[File]]("Compile DSL into appropriate targets (e.g. Scala sources)")
+    val dslLibrary = taskKey[Seq[File]]("Compile DSL into libraries specified in dslLibraries")
     val dslResource = inputKey[Seq[File]]("Scan code and create META-INF/services files for plugins")
     val dslMigrate = inputKey[Unit]("Create an SQL migration file based on difference from DSL in project and in the target database")
     val dslExecute = inputKey[Unit]("Execute custom DSL compiler command")
@@ -24,7 +25,8 @@ object SbtDslPlatformPlugin extends AutoPlugin {
     val dslSources = settingKey[Map[Targets.Option, File]]("Generate sources to specified folders")
     val dslCompiler = settingKey[String]("Path to custom dsl-compiler.exe or port to running instance (requires .NET/Mono)")
     val dslServerMode = settingKey[Boolean]("Talk with DSL compiler in server mode (will be faster)")
-    val dslServerPort = settingKey[Option[Int]]("Use a specific port to talk with DSL compiler in server mode")
+    val dslServerPort = settingKey[Option[Int]]("Use a specific port to talk with DSL compiler in server mode. When not set, compiler shared with other tools is used")
+    val dslScalaServer = settingKey[Boolean]("Compile Scala libraries through a warm Scala compile server (fsc)")
     val dslPostgres = settingKey[String]("JDBC-like connection string to the Postgres database")
     val dslOracle = settingKey[String]("JDBC-like connection string to the Oracle database")
     val dslApplyMigration = settingKey[Boolean]("Apply SQL migration directly to the database")
@@ -109,7 +111,8 @@ object SbtDslPlatformPlugin extends AutoPlugin {
     dslSources in dsl := Map.empty,
     dslCompiler in dsl := "",
     dslServerMode in dsl := false,
-    dslServerPort in dsl := Some(55662),
+    dslServerPort in dsl := None,
+    dslScalaServer in dsl := false,
     dslPostgres in dsl := "",
     dslOracle in dsl := "",
     dslApplyMigration in dsl := false,
@@ -181,6 +184,31 @@ object SbtDslPlatformPlugin extends AutoPlugin {
       }
     },
 
+    dslLibrary := {
+      val depClassPath = managedClasspath.value
+      dslLibraries.value.toList.map { case (targetArg, targetOutput) =>
+        Actions.compileLibrary(
+          streams.value.log,
+          dslVerbose.value,
+          dslAnsi.value,
+          targetArg,
+          targetOutput,
+          dslDslPath.value,
+          dslPlugins.value,
+          dslCompiler.value,
+          dslServerMode.value,
+          dslDownload.value,
+          dslServerPort.value,
+          dslNamespace.value,
+          dslSettings.value,
+          dslCustomSettings.value,
+          dslDependencies.value.get(targetArg),
+          depClassPath,
+          dslLatest.value,
+          dslScalaServer.value)
+      }
+    },
+
     dslResource := {
       if (dslResourcePath.value.isEmpty) {
         streams.value.log.error(s"$scope: dslResourcePath must be set")